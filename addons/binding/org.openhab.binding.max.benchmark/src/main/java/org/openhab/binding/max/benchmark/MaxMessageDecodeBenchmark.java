@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.benchmark;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.util.Base64;
+import org.openhab.binding.max.internal.message.C_Message;
+import org.openhab.binding.max.internal.message.Device;
+import org.openhab.binding.max.internal.message.DeviceConfiguration;
+import org.openhab.binding.max.internal.message.DeviceInformation;
+import org.openhab.binding.max.internal.message.DeviceRegistry;
+import org.openhab.binding.max.internal.message.H_Message;
+import org.openhab.binding.max.internal.message.L_Message;
+import org.openhab.binding.max.internal.message.M_Message;
+import org.openhab.binding.max.internal.message.MaxMessageDecoder;
+import org.openhab.binding.max.internal.message.MaxTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of decoding the messages a MAX! Cube sends on a new
+ * connection, see {@link MaxPayloads}. Run with <code>-prof gc</code> to see
+ * the allocation rate.
+ *
+ * @author agent - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxMessageDecodeBenchmark {
+
+	@Param({ "5", "20", "50", "100", "200" })
+	public int deviceCount;
+
+	private String header;
+	private String metadata;
+	private List<String> configurations;
+	private String liveData;
+	private byte[] decodedLiveData;
+
+	private DeviceRegistry registry;
+	private MaxMessageDecoder decoder;
+
+	@Setup
+	public void setUp() {
+		MaxPayloads payloads = MaxPayloads.create(deviceCount);
+		header = payloads.header;
+		metadata = payloads.metadata;
+		configurations = payloads.configurations;
+		liveData = payloads.liveData;
+		decodedLiveData = Base64.decodeBase64(liveData.substring(2));
+
+		registry = new DeviceRegistry();
+		for (String configuration : configurations) {
+			registry.putConfiguration(DeviceConfiguration.create(new C_Message(configuration)));
+		}
+		for (DeviceInformation di : new M_Message(metadata).devices) {
+			registry.getConfiguration(di.getSerialNumber()).setRoomId(di.getRoomId());
+		}
+		decoder = new MaxMessageDecoder();
+		// the first L message creates the devices, later ones update them
+		new L_Message(liveData).updateDevices(registry, decoder);
+	}
+
+	@Benchmark
+	public H_Message decodeHeader() {
+		return new H_Message(header);
+	}
+
+	@Benchmark
+	public M_Message decodeMetadata() {
+		return new M_Message(metadata);
+	}
+
+	@Benchmark
+	public void decodeConfigurations(Blackhole blackhole) {
+		for (String configuration : configurations) {
+			blackhole.consume(new C_Message(configuration));
+		}
+	}
+
+	@Benchmark
+	public Collection<? extends Device> decodeLiveData() {
+		return new L_Message(liveData).updateDevices(registry, decoder);
+	}
+
+	@Benchmark
+	public Collection<? extends Device> decodeLiveDataNewDecoder() {
+		return new L_Message(liveData).updateDevices(registry);
+	}
+
+	@Benchmark
+	public void tokenizeLiveData(Blackhole blackhole) {
+		MaxTokenizer tokenizer = new MaxTokenizer(decodedLiveData);
+		while (tokenizer.hasMoreElements()) {
+			blackhole.consume(tokenizer.nextElement());
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.util.Base64;
+import org.openhab.binding.max.internal.Utils;
+import org.openhab.binding.max.internal.message.C_Message;
+import org.openhab.binding.max.internal.message.Device;
+import org.openhab.binding.max.internal.message.DeviceConfiguration;
+import org.openhab.binding.max.internal.message.DeviceInformation;
+import org.openhab.binding.max.internal.message.DeviceRegistry;
+import org.openhab.binding.max.internal.message.HeatingThermostat;
+import org.openhab.binding.max.internal.message.L_Message;
+import org.openhab.binding.max.internal.message.M_Message;
+import org.openhab.binding.max.internal.message.S_Command;
+import org.openhab.binding.max.internal.message.ThermostatModeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of encoding the S commands for all thermostats of a
+ * MAX! Cube and of the hexadecimal conversions in {@link Utils}, using the
+ * L message payload of {@link MaxPayloads}. Run with <code>-prof gc</code> to
+ * see the allocation rate.
+ *
+ * @author agent - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxMessageEncodeBenchmark {
+
+	@Param({ "5", "20", "50", "100", "200" })
+	public int deviceCount;
+
+	private final List<HeatingThermostat> thermostats = new ArrayList<HeatingThermostat>();
+	private int[] payload;
+	private String payloadHex;
+
+	@Setup
+	public void setUp() {
+		MaxPayloads payloads = MaxPayloads.create(deviceCount);
+		DeviceRegistry registry = new DeviceRegistry();
+		for (String configuration : payloads.configurations) {
+			registry.putConfiguration(DeviceConfiguration.create(new C_Message(configuration)));
+		}
+		M_Message metadata = new M_Message(payloads.metadata);
+		String liveData = payloads.liveData;
+		// the rooms are only known from the M message
+		for (DeviceInformation di : metadata.devices) {
+			registry.getConfiguration(di.getSerialNumber()).setRoomId(di.getRoomId());
+		}
+		for (Device device : new L_Message(liveData).updateDevices(registry)) {
+			if (device instanceof HeatingThermostat) {
+				thermostats.add((HeatingThermostat) device);
+			}
+		}
+
+		byte[] decoded = Base64.decodeBase64(liveData.substring(2));
+		payload = new int[decoded.length];
+		for (int i = 0; i < decoded.length; i++) {
+			payload[i] = decoded[i] & 0xFF;
+		}
+		payloadHex = Utils.toHex(payload);
+	}
+
+	@Benchmark
+	public void encodeSetpointCommands(Blackhole blackhole) {
+		for (HeatingThermostat thermostat : thermostats) {
+			blackhole.consume(new S_Command(thermostat.getRFAddress(), thermostat.getRoomId(),
+					ThermostatModeType.MANUAL, 21.5).getCommandString());
+		}
+	}
+
+	@Benchmark
+	public void encodeModeCommands(Blackhole blackhole) {
+		for (HeatingThermostat thermostat : thermostats) {
+			blackhole.consume(new S_Command(thermostat.getRFAddress(), thermostat.getRoomId(),
+					ThermostatModeType.AUTOMATIC).getCommandString());
+		}
+	}
+
+	@Benchmark
+	public String toHex() {
+		return Utils.toHex(payload);
+	}
+
+	@Benchmark
+	public byte[] hexStringToByteArray() {
+		return Utils.hexStringToByteArray(payloadHex);
+	}
+}
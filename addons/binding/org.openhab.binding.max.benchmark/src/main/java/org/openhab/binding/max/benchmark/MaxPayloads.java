@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.net.util.Base64;
+
+/**
+ * The {@link MaxPayloads} provides the messages a MAX! Cube sends on a new
+ * connection, in the cube's wire format: the H message, the M message with 6
+ * rooms and 16 devices, a C message per device and the L message. The devices
+ * are heating thermostats, wall mounted thermostats, shutter contacts and an
+ * eco switch, in automatic, manual and boost mode and with battery and link
+ * errors.
+ *
+ * For other device counts the first devices are used, or the devices are
+ * repeated with new RF addresses and serial numbers.
+ *
+ * @author agent - Initial contribution
+ */
+final class MaxPayloads {
+
+	static final String H_MESSAGE = "h-message.txt";
+	static final String M_MESSAGE = "m-message.txt";
+	static final String C_MESSAGES = "c-messages.txt";
+	static final String L_MESSAGE = "l-message.txt";
+
+	private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+	/** first RF address of the repeated devices */
+	private static final int REPEATED_RF_ADDRESS = 0x200000;
+
+	final String header;
+	final String metadata;
+	final List<String> configurations;
+	final String liveData;
+
+	private MaxPayloads(String header, String metadata, List<String> configurations, String liveData) {
+		this.header = header;
+		this.metadata = metadata;
+		this.configurations = configurations;
+		this.liveData = liveData;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the payload
+	 * @return the lines of the payload
+	 */
+	static List<String> load(String name) {
+		InputStream in = MaxPayloads.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IllegalArgumentException("Unknown payload " + name);
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+			List<String> lines = new ArrayList<String>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					lines.add(line);
+				}
+			}
+			return lines;
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read payload " + name, e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * @param deviceCount
+	 *            the number of devices, 1 to 255
+	 * @return the H, M, C and L messages of a cube with the given number of
+	 *         devices
+	 */
+	static MaxPayloads create(int deviceCount) {
+		if (deviceCount < 1 || deviceCount > 255) {
+			throw new IllegalArgumentException("Unsupported number of devices " + deviceCount);
+		}
+
+		byte[] metadata = decode(load(M_MESSAGE).get(0), "M:00,01,".length());
+		Map<Integer, byte[]> configurations = new HashMap<Integer, byte[]>();
+		for (String line : load(C_MESSAGES)) {
+			byte[] configuration = decode(line, line.indexOf(',') + 1);
+			configurations.put(getRFAddress(configuration, 1), configuration);
+		}
+		Map<Integer, byte[]> states = new HashMap<Integer, byte[]>();
+		byte[] liveData = decode(load(L_MESSAGE).get(0), "L:".length());
+		for (int offset = 0; offset < liveData.length; offset += (liveData[offset] & 0xFF) + 1) {
+			states.put(getRFAddress(liveData, offset + 1),
+					Arrays.copyOfRange(liveData, offset, offset + (liveData[offset] & 0xFF) + 1));
+		}
+
+		// the rooms are kept, the devices follow them
+		int offset = 3;
+		for (int room = 0; room < (metadata[2] & 0xFF); room++) {
+			offset += 2 + (metadata[offset + 1] & 0xFF) + 3;
+		}
+		List<byte[]> devices = new ArrayList<byte[]>();
+		int devicesOffset = offset;
+		for (int device = 0; device < (metadata[devicesOffset] & 0xFF); device++) {
+			int start = offset == devicesOffset ? offset + 1 : offset;
+			int end = start + 14;
+			end += (metadata[end] & 0xFF) + 2;
+			devices.add(Arrays.copyOfRange(metadata, start, end));
+			offset = end;
+		}
+
+		StringBuilder m = new StringBuilder();
+		m.append(new String(metadata, 0, devicesOffset, CHARSET));
+		m.append((char) deviceCount);
+		List<String> c = new ArrayList<String>();
+		StringBuilder l = new StringBuilder();
+		for (int i = 0; i < deviceCount; i++) {
+			byte[] device = devices.get(i % devices.size()).clone();
+			int rfAddress = getRFAddress(device, 1);
+			byte[] configuration = configurations.get(rfAddress).clone();
+			byte[] state = states.get(rfAddress).clone();
+			if (i >= devices.size()) {
+				int newRfAddress = REPEATED_RF_ADDRESS + i;
+				byte[] serialNumber = String.format("%.3s%07d", new String(device, 4, 3, CHARSET), i).getBytes(
+						CHARSET);
+				setRFAddress(device, 1, newRfAddress);
+				System.arraycopy(serialNumber, 0, device, 4, serialNumber.length);
+				setRFAddress(configuration, 1, newRfAddress);
+				System.arraycopy(serialNumber, 0, configuration, 8, serialNumber.length);
+				setRFAddress(state, 1, newRfAddress);
+				rfAddress = newRfAddress;
+			}
+			m.append(new String(device, CHARSET));
+			c.add(String.format("C:%06x,", rfAddress) + encode(configuration));
+			l.append(new String(state, CHARSET));
+		}
+		m.append((char) 0x01);
+
+		return new MaxPayloads(load(H_MESSAGE).get(0), "M:00,01," + encode(m.toString().getBytes(CHARSET)), c,
+				"L:" + encode(l.toString().getBytes(CHARSET)));
+	}
+
+	private static byte[] decode(String line, int offset) {
+		return Base64.decodeBase64(line.substring(offset));
+	}
+
+	private static String encode(byte[] data) {
+		return Base64.encodeBase64StringUnChunked(data);
+	}
+
+	private static int getRFAddress(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 16) | ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+	}
+
+	private static void setRFAddress(byte[] data, int offset, int rfAddress) {
+		data[offset] = (byte) (rfAddress >> 16);
+		data[offset + 1] = (byte) (rfAddress >> 8);
+		data[offset + 2] = (byte) rfAddress;
+	}
+}
@@ -52,6 +52,18 @@ public class MaxBinding {
 	    public final static String CHANNEL_SETTEMP = "set_temp";
 	    public final static String CHANNEL_SWITCH_STATE = "eco_mode";
 	    public final static String CHANNEL_CONTACT_STATE = "contact_state";
+
+	    // List of all bridge Channel ids
+	    public final static String CHANNEL_POLL_LATENCY = "poll_latency";
+	    public final static String CHANNEL_POLL_BYTES = "poll_bytes";
+	    public final static String CHANNEL_POLL_LINES = "poll_lines";
+	    public final static String CHANNEL_PARSE_FAILURES = "parse_failures";
+	    public final static String CHANNEL_RECONNECTS = "reconnects";
+	    public final static String CHANNEL_REQUEST_COUNT = "request_count";
+	    public final static String CHANNEL_COMMAND_QUEUE = "command_queue";
+	    public final static String CHANNEL_COMMAND_WAIT = "command_wait";
+	    public final static String CHANNEL_DUTY_CYCLE = "duty_cycle";
+	    public final static String CHANNEL_FREE_MEMORY_SLOTS = "free_memory_slots";
 	    
 	    public final static Collection<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Lists.newArrayList(
 	    		HEATINGTHERMOSTAT_THING_TYPE, HEATINGTHERMOSTATPLUS_THING_TYPE, WALLTHERMOSTAT_THING_TYPE, 
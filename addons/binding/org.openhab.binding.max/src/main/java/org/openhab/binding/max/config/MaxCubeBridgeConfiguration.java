@@ -48,4 +48,26 @@ public class MaxCubeBridgeConfiguration {
 	 * closed and reopened
 	 */
 	public Integer maxRequestsPerConnection;
+
+	/**
+	 * in exclusive mode, if set to true the binding processes the messages
+	 * pushed by the cube as they arrive and only polls if no L message has
+	 * been received for fallbackRefreshInterval
+	 */
+	public boolean streaming = false;
+
+	/** The refresh interval in ms which is used in streaming mode */
+	public Integer fallbackRefreshInterval;
+
+	/**
+	 * If set to true, the cube is polled more often after commands and while
+	 * valves or contacts change, and less often while nothing changes
+	 */
+	public boolean adaptiveRefresh = false;
+
+	/** The shortest refresh interval in ms used in adaptive refresh mode */
+	public Integer minRefreshInterval;
+
+	/** The longest refresh interval in ms used in adaptive refresh mode */
+	public Integer maxRefreshInterval;
 }
@@ -42,11 +42,15 @@ public final class Utils {
 	 * @return the given numbers as hexadecimal number
 	 */
 	public static final String toHex(int... values) {
-		String returnValue = "";
+		final StringBuilder hex = new StringBuilder(2 * values.length);
 		for (int v : values) {
-			returnValue += v < 16 ? "0" + Integer.toHexString(v).toUpperCase() : Integer.toHexString(v).toUpperCase();
+			if (v >= 0 && v < 256) {
+				hex.append(HEXES.charAt(v >> 4)).append(HEXES.charAt(v & 0x0F));
+			} else {
+				hex.append(v < 16 ? "0" : "").append(Integer.toHexString(v).toUpperCase());
+			}
 		}
-		return returnValue;
+		return hex.toString();
 	}
 
 	/**
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.connection;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link MaxCubeConnection} is a non-blocking connection to a single MAX!
+ * Cube. Outgoing lines are queued and written when the channel is writable,
+ * incoming data is split into lines which are passed to the
+ * {@link MaxCubeConnectionListener}.
+ *
+ * @author agent - Initial contribution
+ */
+public class MaxCubeConnection {
+
+	private final static Logger logger = LoggerFactory.getLogger(MaxCubeConnection.class);
+
+	private static final String LINE_TERMINATOR = "\r\n";
+	private static final int READ_BUFFER_SIZE = 4096;
+	private static final int INITIAL_LINE_SIZE = 1024;
+
+	/**
+	 * longest line accepted, well above the largest M or L message of a cube
+	 * with the maximum number of devices
+	 */
+	static final int MAX_LINE_LENGTH = 65536;
+
+	private final MaxCubeConnectionEngine engine;
+	private final String ipAddress;
+	private final int port;
+	private final MaxCubeConnectionListener listener;
+
+	private SocketChannel channel = null;
+	private volatile SelectionKey key = null;
+	private volatile boolean open = false;
+	private volatile boolean connected = false;
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private byte[] lineBuffer = new byte[INITIAL_LINE_SIZE];
+	private int lineLength = 0;
+	/** true while the rest of a line exceeding {@link #MAX_LINE_LENGTH} is skipped */
+	private boolean discardingLine = false;
+	private long discardedLength = 0;
+
+	private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	private final Runnable enableWrite = new Runnable() {
+		@Override
+		public void run() {
+			SelectionKey k = key;
+			if (connected && k != null && k.isValid() && !writeQueue.isEmpty()) {
+				k.interestOps(k.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+	};
+
+	public MaxCubeConnection(MaxCubeConnectionEngine engine, String ipAddress, int port,
+			MaxCubeConnectionListener listener) {
+		this.engine = engine;
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts connecting to the cube. The call returns immediately, the
+	 * connection is completed by the {@link MaxCubeConnectionEngine}.
+	 *
+	 * @throws IOException
+	 *             if the channel cannot be opened or the host is unknown
+	 */
+	public synchronized void open() throws IOException {
+		logger.debug("Open new connection... to {} port {}", ipAddress, port);
+		channel = SocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			// detect a cube which disappeared while the connection is idle
+			channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+			open = true;
+			if (channel.connect(new InetSocketAddress(ipAddress, port))) {
+				connected = true;
+				engine.register(this, channel, writeQueue.isEmpty() ? SelectionKey.OP_READ
+						: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			} else {
+				engine.register(this, channel, SelectionKey.OP_CONNECT);
+			}
+		} catch (UnresolvedAddressException e) {
+			close();
+			throw new UnknownHostException(ipAddress);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Queues a line to be sent to the cube. The line terminator is appended.
+	 *
+	 * @param line
+	 *            the line to be sent
+	 */
+	public void send(String line) {
+		writeQueue.add(ByteBuffer.wrap((line + LINE_TERMINATOR).getBytes(StandardCharsets.US_ASCII)));
+		engine.execute(enableWrite);
+	}
+
+	/**
+	 * Closes the connection without notifying the listener.
+	 */
+	public void close() {
+		open = false;
+		closeChannel();
+	}
+
+	/**
+	 * @return true if the connection is opened or being opened
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return true if the connection to the cube is established
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	void setKey(SelectionKey key) {
+		this.key = key;
+		if (!open) {
+			// closed before the registration was processed
+			key.cancel();
+		}
+	}
+
+	void finishConnect() throws IOException {
+		if (channel.finishConnect()) {
+			connected = true;
+			logger.debug("Connected to MAX! Cube at {} port {}", ipAddress, port);
+			key.interestOps(writeQueue.isEmpty() ? SelectionKey.OP_READ
+					: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	void read() throws IOException {
+		int count = channel.read(readBuffer);
+		if (count < 0) {
+			throw new EOFException("Connection closed by MAX! Cube");
+		}
+		readBuffer.flip();
+		while (readBuffer.hasRemaining()) {
+			byte b = readBuffer.get();
+			if (b == '\n') {
+				int length = lineLength;
+				if (length > 0 && lineBuffer[length - 1] == '\r') {
+					length--;
+				}
+				lineLength = 0;
+				if (discardingLine) {
+					logger.debug("Dropped line of {} bytes from MAX! Cube at {}, longer than {} bytes",
+							discardedLength + length, ipAddress, MAX_LINE_LENGTH);
+					discardingLine = false;
+					discardedLength = 0;
+				} else if (length > 0) {
+					listener.onLineReceived(this, new String(lineBuffer, 0, length, StandardCharsets.US_ASCII));
+				}
+				if (!open) {
+					// closed while the data was read
+					break;
+				}
+			} else {
+				if (lineLength == MAX_LINE_LENGTH) {
+					// skip the line up to its terminator
+					discardingLine = true;
+					discardedLength += lineLength;
+					lineLength = 0;
+				} else if (lineLength == lineBuffer.length) {
+					lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, MAX_LINE_LENGTH));
+				}
+				lineBuffer[lineLength++] = b;
+			}
+		}
+		readBuffer.clear();
+	}
+
+	void write() throws IOException {
+		ByteBuffer buffer;
+		while ((buffer = writeQueue.peek()) != null) {
+			channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				return;
+			}
+			writeQueue.poll();
+		}
+		key.interestOps(SelectionKey.OP_READ);
+		// a line may have been queued after the queue was found empty
+		if (!writeQueue.isEmpty()) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	void failed(IOException cause) {
+		boolean wasOpen = open;
+		close();
+		if (wasOpen) {
+			listener.onConnectionClosed(this, cause);
+		}
+	}
+
+	private void closeChannel() {
+		connected = false;
+		SelectionKey k = key;
+		if (k != null) {
+			k.cancel();
+		}
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.connection;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link MaxCubeConnectionEngine} runs a single selector thread which
+ * serves the {@link MaxCubeConnection}s of all MAX! Cube bridges. No thread is
+ * blocked waiting for an individual cube, so a slow or unreachable cube does
+ * not delay the communication with the other cubes.
+ *
+ * The engine is reference counted. It is started by the first bridge calling
+ * {@link #acquire()} and stopped when the last bridge calls {@link #release()}.
+ *
+ * @author agent - Initial contribution
+ */
+public final class MaxCubeConnectionEngine implements Runnable {
+
+	private final static Logger logger = LoggerFactory.getLogger(MaxCubeConnectionEngine.class);
+
+	private static MaxCubeConnectionEngine instance = null;
+	private static int users = 0;
+
+	private final Selector selector;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	private MaxCubeConnectionEngine() throws IOException {
+		selector = Selector.open();
+		thread = new Thread(this, "MAX! Cube connection engine");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Returns the shared engine, starting it if it is not running yet. Each
+	 * call must be balanced by a call to {@link #release()}.
+	 *
+	 * @return the running engine
+	 * @throws IOException
+	 *             if the selector cannot be opened
+	 */
+	public static synchronized MaxCubeConnectionEngine acquire() throws IOException {
+		if (instance == null) {
+			instance = new MaxCubeConnectionEngine();
+			instance.thread.start();
+			logger.debug("MAX! Cube connection engine started.");
+		}
+		users++;
+		return instance;
+	}
+
+	/**
+	 * Releases the shared engine. The engine is stopped once it is no longer
+	 * used by any bridge.
+	 */
+	public static synchronized void release() {
+		if (users > 0 && --users == 0 && instance != null) {
+			instance.shutdown();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Runs the given task on the selector thread.
+	 *
+	 * @param task
+	 *            the task to be executed
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Registers the channel of a connection with the selector.
+	 *
+	 * @param connection
+	 *            the connection owning the channel
+	 * @param channel
+	 *            the non-blocking channel to be registered
+	 * @param ops
+	 *            the initial interest set
+	 */
+	void register(final MaxCubeConnection connection, final SocketChannel channel, final int ops) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					connection.setKey(channel.register(selector, ops, connection));
+				} catch (IOException e) {
+					connection.failed(e);
+				}
+			}
+		});
+	}
+
+	private void shutdown() {
+		running = false;
+		selector.wakeup();
+		logger.debug("MAX! Cube connection engine stopped.");
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					try {
+						task.run();
+					} catch (Exception e) {
+						logger.debug("Exception occurred during execution: {}", e.getMessage(), e);
+					}
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					MaxCubeConnection connection = (MaxCubeConnection) key.attachment();
+					try {
+						if (key.isValid() && key.isConnectable()) {
+							connection.finishConnect();
+						}
+						if (key.isValid() && key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException e) {
+						connection.failed(e);
+					} catch (Exception e) {
+						logger.debug("Exception occurred during execution: {}", e.getMessage(), e);
+						connection.failed(new IOException(e));
+					}
+				}
+			}
+		} catch (ClosedSelectorException e) {
+			logger.debug("MAX! Cube connection engine selector closed.");
+		} catch (IOException e) {
+			logger.warn("MAX! Cube connection engine stopped unexpectedly: {}", e.getMessage());
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				((MaxCubeConnection) key.attachment()).failed(new IOException("Connection engine stopped"));
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
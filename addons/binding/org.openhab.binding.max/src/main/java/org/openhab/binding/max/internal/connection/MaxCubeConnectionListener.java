@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.connection;
+
+import java.io.IOException;
+
+/**
+ * The {@link MaxCubeConnectionListener} is notified about the lines received
+ * from a MAX! Cube and about the loss of the connection. All methods are
+ * called from the thread of the {@link MaxCubeConnectionEngine}, which serves
+ * all cubes. They must not block and should hand the lines over to another
+ * thread for processing.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public interface MaxCubeConnectionListener {
+
+	/**
+	 * This method is called for every complete line received from the cube.
+	 *
+	 * @param connection
+	 *            The connection the line was received on.
+	 * @param line
+	 *            The received line without the line terminator.
+	 */
+	public void onLineReceived(MaxCubeConnection connection, String line);
+
+	/**
+	 * This method is called when the connection has been closed by the cube
+	 * or has failed. It is not called when the connection is closed by
+	 * {@link MaxCubeConnection#close()}.
+	 *
+	 * @param connection
+	 *            The connection which is closed.
+	 * @param cause
+	 *            The error which caused the connection to be closed.
+	 */
+	public void onConnectionClosed(MaxCubeConnection connection, IOException cause);
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.connection;
+
+import java.util.Random;
+
+/**
+ * The {@link MaxCubeConnectionPolicy} decides when a connection to a MAX! Cube
+ * may be opened.
+ * <ul>
+ * <li>After a failure the next attempt is delayed by an exponential backoff
+ * with random jitter.</li>
+ * <li>After {@link #FAILURE_THRESHOLD} failures in a row the circuit opens and
+ * no connection is attempted for {@link #CIRCUIT_OPEN_TIME}. Then a single
+ * trial connection decides whether the circuit closes again.</li>
+ * <li>The cube only accepts a new connection some time after the previous one
+ * was closed. The policy learns this reconnect interval: it grows when a
+ * connection opened shortly after a close fails and shrinks when such a
+ * connection succeeds.</li>
+ * </ul>
+ *
+ * @author agent - Initial contribution
+ */
+public final class MaxCubeConnectionPolicy {
+
+	public enum CircuitState {
+		/** connections are attempted as usual */
+		CLOSED,
+		/** connections are not attempted until the circuit open time passed */
+		OPEN,
+		/** a single trial connection is attempted */
+		HALF_OPEN
+	}
+
+	/** first backoff after a failure in ms */
+	static final long INITIAL_BACKOFF = 1000;
+
+	/** longest backoff in ms */
+	static final long MAX_BACKOFF = 120000;
+
+	/** number of failures in a row which opens the circuit */
+	static final int FAILURE_THRESHOLD = 5;
+
+	/** time in ms the circuit stays open */
+	static final long CIRCUIT_OPEN_TIME = 300000;
+
+	/** bounds of the learned reconnect interval in ms */
+	static final long MIN_RECONNECT_INTERVAL = 500;
+	static final long MAX_RECONNECT_INTERVAL = 10000;
+
+	private final Random random = new Random();
+
+	private CircuitState state = CircuitState.CLOSED;
+	private int failures = 0;
+	private long nextAttempt = 0;
+
+	/** time in ms the last connection was closed regularly, 0 if it failed */
+	private long lastClosed = 0;
+	private long reconnectInterval = 0;
+
+	/**
+	 * time between the last regular close and the pending attempt, -1 if the
+	 * attempt does not follow a regular close
+	 */
+	private long attemptAfterClose = -1;
+
+	/**
+	 * @param now
+	 *            the current time in ms
+	 * @return the time in ms to wait before a connection may be opened, 0 if
+	 *         it may be opened now
+	 */
+	public synchronized long getConnectDelay(long now) {
+		long delay = Math.max(nextAttempt - now, lastClosed + reconnectInterval - now);
+		return Math.max(0, delay);
+	}
+
+	/**
+	 * Records that a connection is being opened.
+	 *
+	 * @param now
+	 *            the current time in ms
+	 */
+	public synchronized void connecting(long now) {
+		attemptAfterClose = lastClosed > 0 ? now - lastClosed : -1;
+		if (state == CircuitState.OPEN) {
+			state = CircuitState.HALF_OPEN;
+		}
+	}
+
+	/**
+	 * Records that the cube answered on a new connection.
+	 *
+	 * @param now
+	 *            the current time in ms
+	 */
+	public synchronized void connected(long now) {
+		if (attemptAfterClose >= 0 && attemptAfterClose <= 2 * reconnectInterval) {
+			// the cube accepted a quick reconnect, try a bit faster next time
+			reconnectInterval = reconnectInterval * 3 / 4;
+		}
+		attemptAfterClose = -1;
+		failures = 0;
+		nextAttempt = 0;
+		state = CircuitState.CLOSED;
+	}
+
+	/**
+	 * Records that the connection was closed regularly.
+	 *
+	 * @param now
+	 *            the current time in ms
+	 */
+	public synchronized void closed(long now) {
+		lastClosed = now;
+	}
+
+	/**
+	 * Records that a connection failed and decides when the next connection
+	 * may be attempted.
+	 *
+	 * @param now
+	 *            the current time in ms
+	 * @return the state of the circuit after the failure
+	 */
+	public synchronized CircuitState failed(long now) {
+		failures++;
+		if (attemptAfterClose >= 0 && attemptAfterClose < MAX_RECONNECT_INTERVAL) {
+			// the cube possibly did not yet accept a new connection
+			reconnectInterval = Math.min(MAX_RECONNECT_INTERVAL,
+					Math.max(MIN_RECONNECT_INTERVAL, Math.max(reconnectInterval, attemptAfterClose) * 2));
+		}
+		attemptAfterClose = -1;
+
+		long backoff;
+		if (state == CircuitState.HALF_OPEN || failures >= FAILURE_THRESHOLD) {
+			state = CircuitState.OPEN;
+			backoff = CIRCUIT_OPEN_TIME;
+		} else {
+			backoff = Math.min(INITIAL_BACKOFF << Math.min(failures - 1, 16), MAX_BACKOFF);
+		}
+		// wait between half and the full backoff, so several bridges do not
+		// retry at the same time
+		nextAttempt = now + backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+		lastClosed = 0;
+		return state;
+	}
+
+	/**
+	 * @return the state of the circuit
+	 */
+	public synchronized CircuitState getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of failures since the last successful connection
+	 */
+	public synchronized int getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return the learned time in ms the cube needs before it accepts a new
+	 *         connection
+	 */
+	public synchronized long getReconnectInterval() {
+		return reconnectInterval;
+	}
+}
@@ -9,16 +9,28 @@
 package org.openhab.binding.max.internal.discovery;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.net.SocketTimeoutException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
@@ -41,9 +53,23 @@ public class MaxCubeBridgeDiscovery extends AbstractDiscoveryService {
 
 	static final String MAXCUBE_DISCOVER_STRING = "eQ3Max*\0**********I";
 
+	/** the cubes listen and answer on this port */
+	static final int DISCOVERY_PORT = 23272;
+
+	/** time in ms to wait for answers */
+	private static final long RECEIVE_TIMEOUT = 10000;
+
+	/** time in ms to wait for new cubes once all known cubes answered */
+	private static final long SETTLE_TIME = 500;
+
+	private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
 	private final static Logger logger = LoggerFactory.getLogger(MaxCubeBridgeDiscovery.class);
 
-	static boolean discoveryRunning = false;
+	/** serial numbers of the cubes which answered previous scans */
+	private final Set<String> knownCubes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private Future<?> scanJob;
 
 	public MaxCubeBridgeDiscovery() {
 		super(MaxBinding.SUPPORTED_BRIDGE_THING_TYPES_UIDS, 15);
@@ -59,6 +85,15 @@ public class MaxCubeBridgeDiscovery extends AbstractDiscoveryService {
 		discoverCube();
 	}
 
+	@Override
+	protected synchronized void stopScan() {
+		if (scanJob != null) {
+			scanJob.cancel(true);
+			scanJob = null;
+		}
+		super.stopScan();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -76,77 +111,115 @@ public class MaxCubeBridgeDiscovery extends AbstractDiscoveryService {
 		return true;
 	}
 
+	/**
+	 * Starts a scan on the discovery scheduler, unless a scan is running
+	 * already.
+	 */
 	private synchronized void discoverCube() {
-		discoveryRunning = true;
-		Thread thread = new Thread("Sendbroadcast") {
+		if (scanJob != null && !scanJob.isDone()) {
+			logger.trace("MAX! Cube discovery already running.");
+			return;
+		}
+		scanJob = scheduler.submit(new Runnable() {
+			@Override
 			public void run() {
-				sendDiscoveryMessage(MAXCUBE_DISCOVER_STRING);
-				try {
-					sleep(5000);
-				} catch (Exception e) {
-				}
-				discoveryRunning = false;
-				logger.trace("Done sending broadcast discovery messages.");
+				scan();
 			}
-		};
-		thread.start();
-		receiveDiscoveryMessage();
+		});
 	}
 
-	private void receiveDiscoveryMessage() {
-		String maxCubeIP = null;
-		String maxCubeName = null;
-		String serialNumber = null;
-		String rfAddress = null;
-		DatagramSocket bcReceipt = null;
-
+	/**
+	 * Broadcasts the discovery message on all interfaces and reports the cubes
+	 * as they answer. The scan ends after {@link #RECEIVE_TIMEOUT}, or shortly
+	 * after all cubes found by previous scans have answered.
+	 */
+	private void scan() {
+		DatagramChannel channel = null;
+		Selector selector = null;
 		try {
-			bcReceipt = new DatagramSocket(23272);
-			bcReceipt.setReuseAddress(true);
-			bcReceipt.setSoTimeout(10000);
-
-			while (discoveryRunning) {
-				// Wait for a response
-				byte[] recvBuf = new byte[1500];
-				DatagramPacket receivePacket = new DatagramPacket(recvBuf, recvBuf.length);
-				bcReceipt.receive(receivePacket);
-
-				// We have a response
-				String message = new String(receivePacket.getData()).trim();
-				logger.trace("Broadcast response from {} : {} '{}'", receivePacket.getAddress(), message.length(),
-						message);
-
-				// Check if the message is correct
-				if (message.startsWith("eQ3Max") && !message.equals(MAXCUBE_DISCOVER_STRING)) {
-					maxCubeIP = receivePacket.getAddress().getHostAddress();
-					maxCubeName = message.substring(0, 8);
-					serialNumber = message.substring(8, 18);
-					byte[] unknownData = message.substring(18, 21).getBytes();
-					rfAddress = Utils.getHex(message.substring(21).getBytes()).replace(" ", "").toLowerCase();
-					logger.debug("MAX! Cube found on network");
-					logger.debug("Found at  : {}", maxCubeIP);
-					logger.debug("Name      : {}", maxCubeName);
-					logger.debug("Serial    : {}", serialNumber);
-					logger.debug("RF Address: {}", rfAddress);
-					logger.trace("Unknown   : {}", Utils.getHex(unknownData));
-					discoveryResultSubmission(maxCubeIP, serialNumber);
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			channel.bind(new InetSocketAddress(DISCOVERY_PORT));
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+
+			Set<String> expected = new HashSet<String>(knownCubes);
+			Set<String> found = new HashSet<String>();
+
+			sendDiscoveryMessage(channel, MAXCUBE_DISCOVER_STRING);
+
+			ByteBuffer buffer = ByteBuffer.allocate(1500);
+			long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT;
+			long remaining;
+			while ((remaining = deadline - System.currentTimeMillis()) > 0 && !Thread.currentThread().isInterrupted()) {
+				if (selector.select(remaining) == 0) {
+					continue;
+				}
+				selector.selectedKeys().clear();
+
+				SocketAddress sender;
+				while ((sender = channel.receive(buffer)) != null) {
+					buffer.flip();
+					String serialNumber = processResponse(((InetSocketAddress) sender).getAddress(), buffer);
+					buffer.clear();
+					if (serialNumber != null && found.add(serialNumber)) {
+						knownCubes.add(serialNumber);
+						if (!expected.isEmpty() && found.containsAll(expected)) {
+							deadline = Math.min(deadline, System.currentTimeMillis() + SETTLE_TIME);
+						}
+					}
 				}
 			}
-		} catch (SocketTimeoutException e) {
-			logger.trace("No further response");
+			logger.trace("MAX! Cube discovery finished, {} cube(s) answered.", found.size());
+		} catch (ClosedByInterruptException e) {
+			logger.trace("MAX! Cube discovery stopped.");
 		} catch (IOException e) {
 			logger.debug("IO error during MAX! Cube discovery: {}", e.getMessage());
 		} finally {
-			// Close the port!
 			try {
-				if (bcReceipt != null)
-					bcReceipt.close();
-			} catch (Exception e) {
+				if (selector != null) {
+					selector.close();
+				}
+				if (channel != null) {
+					channel.close();
+				}
+			} catch (IOException e) {
 				logger.debug(e.toString());
 			}
 		}
 	}
 
+	/**
+	 * Processes an answer to the discovery message.
+	 * 
+	 * @return the serial number of the cube or null if the datagram was not
+	 *         sent by a cube
+	 */
+	private String processResponse(InetAddress sender, ByteBuffer data) {
+		String message = new String(data.array(), 0, data.limit(), CHARSET).trim();
+		logger.trace("Broadcast response from {} : {} '{}'", sender, message.length(), message);
+
+		// Check if the message is correct
+		if (!message.startsWith("eQ3Max") || message.equals(MAXCUBE_DISCOVER_STRING) || message.length() < 21) {
+			return null;
+		}
+		String maxCubeIP = sender.getHostAddress();
+		String maxCubeName = message.substring(0, 8);
+		String serialNumber = message.substring(8, 18);
+		byte[] unknownData = message.substring(18, 21).getBytes(CHARSET);
+		String rfAddress = Utils.getHex(message.substring(21).getBytes(CHARSET)).replace(" ", "").toLowerCase();
+		logger.debug("MAX! Cube found on network");
+		logger.debug("Found at  : {}", maxCubeIP);
+		logger.debug("Name      : {}", maxCubeName);
+		logger.debug("Serial    : {}", serialNumber);
+		logger.debug("RF Address: {}", rfAddress);
+		logger.trace("Unknown   : {}", Utils.getHex(unknownData));
+		discoveryResultSubmission(maxCubeIP, serialNumber);
+		return serialNumber;
+	}
+
 	private void discoveryResultSubmission(String IpAddress, String cubeSerialNumber) {
 		if (cubeSerialNumber != null) {
 			logger.trace("Adding new MAX! Cube Lan Gateway on {} with id '{}' to Smarthome inbox", IpAddress,
@@ -164,62 +237,46 @@ public class MaxCubeBridgeDiscovery extends AbstractDiscoveryService {
 	}
 
 	/**
-	 * Send broadcast message over all active interfaces
+	 * Send broadcast message over all active interfaces. The datagrams are
+	 * sent without waiting for answers in between.
 	 * 
+	 * @param channel
+	 *            the channel the answers are received on
 	 * @param discoverString
 	 *            String to be used for the discovery
 	 */
-	private void sendDiscoveryMessage(String discoverString) {
-		DatagramSocket bcSend = null;
-		// Find the MaxCube using UDP broadcast
-		try {
-			bcSend = new DatagramSocket();
-			bcSend.setBroadcast(true);
-
-			byte[] sendData = discoverString.getBytes();
+	private void sendDiscoveryMessage(DatagramChannel channel, String discoverString) throws IOException {
+		byte[] sendData = discoverString.getBytes(CHARSET);
 
-			// Broadcast the message over all the network interfaces
-			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-			while (interfaces.hasMoreElements()) {
-				NetworkInterface networkInterface = (NetworkInterface) interfaces.nextElement();
-				if (networkInterface.isLoopback() || !networkInterface.isUp()) {
-					continue;
-				}
-				for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
-					InetAddress[] broadcast = new InetAddress[3];
-					broadcast[0] = InetAddress.getByName("224.0.0.1");
-					broadcast[0] = InetAddress.getByName("255.255.255.255");
-					broadcast[1] = interfaceAddress.getBroadcast();
-					for (InetAddress bc : broadcast) {
-						// Send the broadcast package!
-						if (bc != null) {
-							try {
-								DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, bc, 23272);
-								bcSend.send(sendPacket);
-							} catch (IOException e) {
-								logger.debug("IO error during MAX! Cube discovery: {}", e.getMessage());
-							} catch (Exception e) {
-								logger.info(e.getMessage(), e);
-							}
-							logger.trace("Request packet sent to: {} Interface: {}", bc.getHostAddress(),
-									networkInterface.getDisplayName());
-						}
-					}
+		// one datagram per broadcast address, also if shared by interfaces
+		Map<InetAddress, String> broadcasts = new LinkedHashMap<InetAddress, String>();
+		broadcasts.put(InetAddress.getByName("255.255.255.255"), "all");
+		Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+		while (interfaces != null && interfaces.hasMoreElements()) {
+			NetworkInterface networkInterface = interfaces.nextElement();
+			if (networkInterface.isLoopback() || !networkInterface.isUp()) {
+				continue;
+			}
+			for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+				if (interfaceAddress.getBroadcast() != null) {
+					broadcasts.put(interfaceAddress.getBroadcast(), networkInterface.getDisplayName());
 				}
 			}
-			logger.trace("Done looping over all network interfaces. Now waiting for a reply!");
+		}
 
-		} catch (IOException e) {
-			logger.debug("IO error during MAX! Cube discovery: {}", e.getMessage());
-		} finally {
+		for (Map.Entry<InetAddress, String> broadcast : broadcasts.entrySet()) {
 			try {
-				if (bcSend != null)
-					bcSend.close();
-			} catch (Exception e) {
-				// Ignore
+				if (channel.send(ByteBuffer.wrap(sendData), new InetSocketAddress(broadcast.getKey(), DISCOVERY_PORT)) > 0) {
+					logger.trace("Request packet sent to: {} Interface: {}", broadcast.getKey().getHostAddress(),
+							broadcast.getValue());
+				} else {
+					logger.debug("Request packet to {} could not be sent.", broadcast.getKey().getHostAddress());
+				}
+			} catch (IOException e) {
+				logger.debug("IO error during MAX! Cube discovery: {}", e.getMessage());
 			}
 		}
-
+		logger.trace("Done looping over all network interfaces. Now waiting for a reply!");
 	}
 
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@ import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
 import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
 import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.ThingUID;
 import org.openhab.binding.max.MaxBinding;
@@ -91,7 +92,11 @@ public class MaxDeviceDiscoveryService extends AbstractDiscoveryService implemen
 
 	@Override
 	protected void startScan() {
-		// this can be ignored here as we discover via the bridge
+		// devices are discovered via the bridge, report the ones it already
+		// knows again
+		for (Device device : maxCubeBridgeHandler.getDeviceRegistry().getDevices()) {
+			onDeviceAdded(maxCubeBridgeHandler.getThing(), device);
+		}
 	}
 
 	@Override
@@ -103,4 +108,9 @@ public class MaxDeviceDiscoveryService extends AbstractDiscoveryService implemen
 	public void onDeviceRemoved(MaxCubeBridgeHandler bridge, Device device) {
 		// this can be ignored here
 	}
+
+	@Override
+	public void onDeviceStatusChanged(ThingUID bridge, String serialNumber, ThingStatus status) {
+		// this can be ignored here
+	}
 }
@@ -98,7 +98,7 @@ public class MaxCubeHandlerFactory extends BaseThingHandlerFactory {
 	@Override
 	protected ThingHandler createHandler(Thing thing) {
 		if (thing.getThingTypeUID().equals(MaxBinding.CUBEBRIDGE_THING_TYPE)) {
-			MaxCubeBridgeHandler handler = new MaxCubeBridgeHandler((Bridge) thing);
+			MaxCubeBridgeHandler handler = new MaxCubeBridgeHandler((Bridge) thing, bundleContext.getDataFile(""));
 			registerDeviceDiscoveryService(handler);
 			return handler;
 		} else if (supportsThingType(thing.getThingTypeUID())) {
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+/**
+ * The {@link AdaptiveRefreshInterval} decides how long to wait before the
+ * MAX! Cube is polled again. The cube is polled quickly after a command was
+ * sent and while valves are moving or contacts change. The interval is
+ * doubled whenever nothing changed for {@link #QUIET_POLLS} polls in a row, up
+ * to the maximum interval.
+ *
+ * @author agent - Initial contribution
+ */
+public final class AdaptiveRefreshInterval {
+
+	/** number of polls without changes after which the interval is doubled */
+	static final int QUIET_POLLS = 3;
+
+	private final long minInterval;
+	private final long maxInterval;
+	private final long baseInterval;
+
+	private long interval;
+	private int quietPolls = 0;
+
+	/**
+	 * @param minInterval
+	 *            the interval in ms used after a command or while the devices
+	 *            are changing
+	 * @param baseInterval
+	 *            the interval in ms used when some values change
+	 * @param maxInterval
+	 *            the interval in ms used when nothing changes for a while
+	 */
+	public AdaptiveRefreshInterval(long minInterval, long baseInterval, long maxInterval) {
+		this.minInterval = minInterval;
+		this.maxInterval = Math.max(maxInterval, minInterval);
+		this.baseInterval = Math.min(Math.max(baseInterval, this.minInterval), this.maxInterval);
+		this.interval = this.baseInterval;
+	}
+
+	/**
+	 * Records a user action, like a command sent to a device. The cube is
+	 * polled with the minimum interval until the change has settled.
+	 */
+	public synchronized void activity() {
+		interval = minInterval;
+		quietPolls = 0;
+	}
+
+	/**
+	 * Records the result of a poll.
+	 *
+	 * @param moving
+	 *            true if a valve position or a contact changed
+	 * @param changed
+	 *            true if any value of a device changed
+	 */
+	public synchronized void pollCompleted(boolean moving, boolean changed) {
+		if (moving) {
+			interval = minInterval;
+			quietPolls = 0;
+		} else if (changed) {
+			// values still change, do not poll slower than the base interval
+			interval = Math.min(interval, baseInterval);
+			quietPolls = 0;
+		} else if (++quietPolls >= QUIET_POLLS) {
+			interval = Math.min(interval * 2, maxInterval);
+			quietPolls = 0;
+		}
+	}
+
+	/**
+	 * @return the longest time in ms between two polls
+	 */
+	public long getMaxInterval() {
+		return maxInterval;
+	}
+
+	/**
+	 * @return the time in ms to wait before the next poll
+	 */
+	public synchronized long getInterval() {
+		return interval;
+	}
+}
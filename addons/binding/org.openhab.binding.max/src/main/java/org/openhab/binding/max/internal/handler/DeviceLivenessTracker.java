@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openhab.binding.max.internal.message.Device;
+
+/**
+ * The {@link DeviceLivenessTracker} keeps track of the devices reported in the
+ * L messages of a MAX! Cube. A device is online while it has been reported
+ * within the timeout. Only the changes between online and offline are returned,
+ * so the device handlers are just notified when their status changes.
+ *
+ * @author agent - Initial contribution
+ */
+public final class DeviceLivenessTracker {
+
+	/** time in ms of the last L message containing a device, by serial number */
+	private final Map<String, Long> lastSeen = new HashMap<String, Long>();
+
+	/** serial numbers of the devices which are online */
+	private final Set<String> online = new HashSet<String>();
+
+	/**
+	 * Records the devices contained in an L message.
+	 *
+	 * @param devices
+	 *            the devices contained in the message
+	 * @param now
+	 *            the time the message was received in ms
+	 * @return the serial numbers of the devices which came online
+	 */
+	public synchronized List<String> seen(Collection<Device> devices, long now) {
+		List<String> cameOnline = new ArrayList<String>();
+		for (Device device : devices) {
+			String serialNumber = device.getSerialNumber();
+			lastSeen.put(serialNumber, now);
+			if (online.add(serialNumber)) {
+				cameOnline.add(serialNumber);
+			}
+		}
+		return cameOnline;
+	}
+
+	/**
+	 * Takes the devices offline which have not been reported within the
+	 * timeout.
+	 *
+	 * @param now
+	 *            the current time in ms
+	 * @param timeout
+	 *            the time in ms after which a device is offline
+	 * @return the serial numbers of the devices which went offline
+	 */
+	public synchronized List<String> expire(long now, long timeout) {
+		List<String> wentOffline = new ArrayList<String>();
+		Iterator<String> it = online.iterator();
+		while (it.hasNext()) {
+			String serialNumber = it.next();
+			if (now - lastSeen.get(serialNumber) >= timeout) {
+				it.remove();
+				wentOffline.add(serialNumber);
+			}
+		}
+		return wentOffline;
+	}
+
+	/**
+	 * Takes all devices offline.
+	 *
+	 * @return the serial numbers of the devices which went offline
+	 */
+	public synchronized List<String> clear() {
+		List<String> wentOffline = new ArrayList<String>(online);
+		online.clear();
+		lastSeen.clear();
+		return wentOffline;
+	}
+
+	/**
+	 * @param serialNumber
+	 *            the serial number of the device
+	 * @return true if the device has been reported within the timeout
+	 */
+	public synchronized boolean isOnline(String serialNumber) {
+		return online.contains(serialNumber);
+	}
+}
@@ -9,6 +9,7 @@
 package org.openhab.binding.max.internal.handler;
 
 import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingUID;
 import org.openhab.binding.max.internal.message.Device;
 
@@ -52,4 +53,17 @@ public interface DeviceStatusListener {
 	 */
 	public void onDeviceAdded(Bridge bridge, Device device);
 
+	/**
+	 * This method is called whenever a device comes online or goes offline,
+	 * see {@link DeviceLivenessTracker}.
+	 * 
+	 * @param bridge
+	 *            The MAX! Cube bridge the device is connected to.
+	 * @param serialNumber
+	 *            The serial number of the device.
+	 * @param status
+	 *            Either {@link ThingStatus#ONLINE} or {@link ThingStatus#OFFLINE}.
+	 */
+	public void onDeviceStatusChanged(ThingUID bridge, String serialNumber, ThingStatus status);
+
 }
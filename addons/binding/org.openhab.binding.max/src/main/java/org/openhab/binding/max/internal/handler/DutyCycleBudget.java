@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import org.openhab.binding.max.internal.message.S_Message;
+
+/**
+ * The {@link DutyCycleBudget} decides how fast commands can be sent to a MAX!
+ * Cube. It uses the duty cycle and the free memory slots reported in the H and
+ * S messages. Commands are sent quickly while the cube has radio budget left,
+ * the interval grows as the duty cycle fills up and is backed off
+ * exponentially when the cube discards commands. The duty cycle covers the
+ * radio time of a sliding hour, so between two reports it is estimated to
+ * recover as that hour passes.
+ *
+ * @author agent - Initial contribution
+ */
+public final class DutyCycleBudget {
+
+	/** shortest interval between two commands in ms */
+	static final long MIN_SEND_INTERVAL = 250;
+
+	/** interval between two commands when the duty cycle is exhausted in ms */
+	static final long MAX_SEND_INTERVAL = 60000;
+
+	/** first interval used after the cube discarded a command in ms */
+	static final long BACKOFF_INTERVAL = 5000;
+
+	/** time to wait for the S message of a sent command in ms */
+	static final long RESPONSE_TIMEOUT = 5000;
+
+	/** period in ms covered by the duty cycle of the cube */
+	static final long DUTY_CYCLE_WINDOW = 3600000;
+
+	/** duty cycle (in %) above which the cube is treated as exhausted */
+	private static final int DUTY_CYCLE_LIMIT = 90;
+
+	private int dutyCycle = 0;
+	private int freeMemorySlots = -1;
+	private long reported = 0;
+	private long backoff = 0;
+	private long averageResponseTime = MIN_SEND_INTERVAL;
+
+	/**
+	 * Updates the budget with the values of an S message.
+	 *
+	 * @param message
+	 *            the S message received after a command
+	 * @param responseTime
+	 *            the time in ms between sending the command and receiving the
+	 *            message, or a negative value if unknown
+	 */
+	public synchronized void update(S_Message message, long responseTime) {
+		update(message.getDutyCycle(), message.getFreeMemorySlots(), System.currentTimeMillis());
+		if (message.isCommandDiscarded()) {
+			backoff = backoff == 0 ? BACKOFF_INTERVAL : Math.min(backoff * 2, MAX_SEND_INTERVAL);
+		} else {
+			backoff = 0;
+		}
+		if (responseTime >= 0) {
+			averageResponseTime = (averageResponseTime * 3 + responseTime) / 4;
+		}
+	}
+
+	/**
+	 * Updates the budget with the radio state reported by the cube, e.g. in
+	 * the H message sent on every new connection.
+	 *
+	 * @param dutyCycle
+	 *            the duty cycle in %
+	 * @param freeMemorySlots
+	 *            the free memory slots
+	 * @param now
+	 *            the time of the report in ms
+	 */
+	public synchronized void update(int dutyCycle, int freeMemorySlots, long now) {
+		this.dutyCycle = dutyCycle;
+		this.freeMemorySlots = freeMemorySlots;
+		this.reported = now;
+	}
+
+	/**
+	 * @return the time in ms to wait before the next command is sent
+	 */
+	public long getSendDelay() {
+		return getSendDelay(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param now
+	 *            the current time in ms
+	 * @return the time in ms to wait before the next command is sent
+	 */
+	public synchronized long getSendDelay(long now) {
+		if (backoff > 0) {
+			return backoff;
+		}
+		long elapsed = Math.max(0, now - reported);
+		// the radio time reported is assumed to be spread over the last hour,
+		// so it leaves the window at an even rate
+		double estimated = elapsed >= DUTY_CYCLE_WINDOW ? 0 : dutyCycle
+				* (1 - (double) elapsed / DUTY_CYCLE_WINDOW);
+		// the memory slots are freed as the queued messages are delivered, so
+		// a full memory is only trusted until the next command is due
+		boolean memoryFull = freeMemorySlots == 0 && elapsed < MAX_SEND_INTERVAL;
+		if (estimated >= DUTY_CYCLE_LIMIT || memoryFull) {
+			return MAX_SEND_INTERVAL;
+		}
+		// grow quadratically with the used duty cycle, so the budget is spent
+		// quickly at first and slowly when it is nearly used up
+		double used = estimated / DUTY_CYCLE_LIMIT;
+		return MIN_SEND_INTERVAL + (long) ((MAX_SEND_INTERVAL / 10) * used * used);
+	}
+
+	/**
+	 * Returns the expected time needed to send the given number of commands.
+	 *
+	 * @param commands
+	 *            the number of queued commands
+	 * @return the expected time in ms
+	 */
+	public synchronized long getExpectedDrainTime(int commands) {
+		return commands * (getSendDelay() + averageResponseTime);
+	}
+
+	public synchronized int getDutyCycle() {
+		return dutyCycle;
+	}
+
+	public synchronized int getFreeMemorySlots() {
+		return freeMemorySlots;
+	}
+}
@@ -8,23 +8,41 @@
  */
 package org.openhab.binding.max.internal.handler;
 
+import static org.openhab.binding.max.MaxBinding.CHANNEL_COMMAND_QUEUE;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_COMMAND_WAIT;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_CONTACT_STATE;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_DUTY_CYCLE;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_FREE_MEMORY_SLOTS;
 import static org.openhab.binding.max.MaxBinding.CHANNEL_MODE;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_PARSE_FAILURES;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_POLL_BYTES;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_POLL_LATENCY;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_POLL_LINES;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_RECONNECTS;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_REQUEST_COUNT;
 import static org.openhab.binding.max.MaxBinding.CHANNEL_SETTEMP;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_VALVE;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.ConnectException;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.io.OutputStreamWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
@@ -35,15 +53,25 @@ import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.max.config.MaxCubeBridgeConfiguration;
 import org.openhab.binding.max.internal.Utils;
+import org.openhab.binding.max.internal.connection.MaxCubeConnection;
+import org.openhab.binding.max.internal.connection.MaxCubeConnectionEngine;
+import org.openhab.binding.max.internal.connection.MaxCubeConnectionListener;
+import org.openhab.binding.max.internal.connection.MaxCubeConnectionPolicy;
 import org.openhab.binding.max.internal.message.C_Message;
+import org.openhab.binding.max.internal.message.CommandFuture;
+import org.openhab.binding.max.internal.message.CommandResult;
+import org.openhab.binding.max.internal.message.ConfigurationSnapshot;
 import org.openhab.binding.max.internal.message.Device;
 import org.openhab.binding.max.internal.message.DeviceConfiguration;
 import org.openhab.binding.max.internal.message.DeviceInformation;
+import org.openhab.binding.max.internal.message.DeviceRegistry;
 import org.openhab.binding.max.internal.message.H_Message;
 import org.openhab.binding.max.internal.message.HeatingThermostat;
 import org.openhab.binding.max.internal.message.L_Message;
+import org.openhab.binding.max.internal.message.MaxMessageDecoder;
 import org.openhab.binding.max.internal.message.M_Message;
 import org.openhab.binding.max.internal.message.Message;
 import org.openhab.binding.max.internal.message.MessageType;
@@ -64,12 +92,26 @@ import org.slf4j.LoggerFactory;
  * @author Bernd Michael Helm (bernd.helm at helmundwalter.de) - Exclusive mode
  * 
  */
-public class MaxCubeBridgeHandler extends BaseBridgeHandler {
+public class MaxCubeBridgeHandler extends BaseBridgeHandler implements MaxCubeConnectionListener {
 	// TODO: optional configuration to get the actual temperature on a
 	// configured interval by changing the valve / temp setting
 
 	public MaxCubeBridgeHandler(Bridge br) {
+		this(br, null);
+	}
+
+	/**
+	 * Creates a bridge handler which keeps a configuration snapshot of the
+	 * cube in the given folder.
+	 * 
+	 * @param br
+	 *            the bridge
+	 * @param snapshotFolder
+	 *            the folder for the snapshot file or null to disable it
+	 */
+	public MaxCubeBridgeHandler(Bridge br, File snapshotFolder) {
 		super(br);
+		this.snapshotFolder = snapshotFolder;
 	}
 
 	private Logger logger = LoggerFactory.getLogger(MaxCubeBridgeHandler.class);
@@ -78,7 +120,46 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	private long refreshInterval = 10000;
 	ScheduledFuture<?> refreshJob;
 
-	private ArrayList<Device> devices = new ArrayList<Device>();
+	/** Refresh commands received within this time in ms share one poll */
+	private static final long REFRESH_COALESCE_DELAY = 100;
+
+	private static final long DEFAULT_MIN_REFRESH_INTERVAL = 5000;
+	private static final long DEFAULT_MAX_REFRESH_INTERVAL = 300000;
+
+	/**
+	 * Decides the refresh interval in adaptive refresh mode, null if the cube
+	 * is polled with the fixed refresh interval
+	 */
+	private AdaptiveRefreshInterval adaptiveRefresh = null;
+	private boolean polling = false;
+
+	/** devices and configurations of the cube indexed by RF address and serial */
+	private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+
+	/** reused for decoding the L messages, only used while holding the handler lock */
+	private final MaxMessageDecoder messageDecoder = new MaxMessageDecoder();
+
+	/**
+	 * The rooms and device configurations are kept in a snapshot file, so
+	 * devices are known right after a restart
+	 */
+	private final File snapshotFolder;
+	private volatile File snapshotFile = null;
+	private byte[] lastSnapshot = null;
+	private boolean configurationChanged = false;
+
+	/**
+	 * the latest snapshot not yet written. The snapshots are written one at a
+	 * time, and only the latest of the snapshots saved meanwhile is written.
+	 */
+	private final AtomicReference<byte[]> pendingSnapshot = new AtomicReference<byte[]>();
+	private final Object snapshotWriteLock = new Object();
+	private Runnable snapshotWriteRunnable = new Runnable() {
+		@Override
+		public void run() {
+			writeSnapshot();
+		}
+	};
 	private HashSet<String> lastActiveDevices = new HashSet<String>();
 
 	/** MAX! Thermostat default off temperature */
@@ -87,22 +168,27 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	/** MAX! Thermostat default on temperature */
 	private static final DecimalType DEFAULT_ON_TEMPERATURE = new DecimalType(30.5);
 
-	private ArrayList<DeviceConfiguration> configurations = new ArrayList<DeviceConfiguration>();
-
 	/** maximum queue size that we're allowing */
 	private static final int MAX_COMMANDS = 50;
-	private ArrayBlockingQueue<SendCommand> commandQueue = new ArrayBlockingQueue<SendCommand>(MAX_COMMANDS);
+	private SendCommandQueue commandQueue = new SendCommandQueue(MAX_COMMANDS);
 
 	private boolean connectionEstablished = false;
 
-	private SendCommand lastCommandId = null;
-
 	private String ipAddress;
 	private int port;
 	private boolean exclusive;
 	private int maxRequestsPerConnection;
 	private int requestCount = 0;
 
+	/**
+	 * In streaming mode the messages pushed by the cube are processed as they
+	 * arrive, the cube is only polled if no L message has been received
+	 * within the fallback refresh interval
+	 */
+	private boolean streaming;
+	private long fallbackRefreshInterval = 300000;
+	private long lastStateReceived = 0;
+
 	/**
 	 * Duty cycle of the cube
 	 */
@@ -114,16 +200,87 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	private int freeMemorySlots;
 
 	/**
-	 * connection socket and reader/writer for execute method
+	 * Decides how fast the queued commands can be sent to the cube
 	 */
-	private Socket socket = null;
-	private BufferedReader reader = null;
-	private OutputStreamWriter writer = null;
+	private final DutyCycleBudget dutyCycleBudget = new DutyCycleBudget();
+	private long lastCommandSent = 0;
+
+	/** number of commands folded into a room command of another device */
+	private long commandsFolded = 0;
+
+	/**
+	 * connection to the cube, served by the shared connection engine
+	 */
+	private MaxCubeConnectionEngine engine = null;
+	private MaxCubeConnection connection = null;
+
+	/** decides when a connection may be opened after a failure or a close */
+	private final MaxCubeConnectionPolicy connectionPolicy = new MaxCubeConnectionPolicy();
+
+	/** true while a state request has not been answered by an L message */
+	private boolean requestPending = false;
+	private long requestStarted = 0;
+
+	/**
+	 * lines and failures of the connection, handed over by the thread of the
+	 * connection engine and processed in order on the scheduler, so the engine
+	 * shared by all cubes is not held up by this handler
+	 */
+	private final ConcurrentLinkedQueue<ConnectionEvent> connectionEvents = new ConcurrentLinkedQueue<ConnectionEvent>();
+	private final AtomicBoolean processingConnectionEvents = new AtomicBoolean(false);
+	private Runnable connectionEventsRunnable = new Runnable() {
+		@Override
+		public void run() {
+			processConnectionEvents();
+		}
+	};
+
+	/** maximum number of commands sent without an acknowledgement by the cube */
+	private static final int MAX_COMMANDS_IN_FLIGHT = 3;
+
+	/**
+	 * commands sent which are not yet answered by an S message, in the order
+	 * they have been sent. The cube acknowledges commands in order.
+	 */
+	private final Deque<InFlightCommand> inFlightCommands = new ArrayDeque<InFlightCommand>();
+
+	/**
+	 * number of expired commands whose S message may still be received on
+	 * the current connection. Their S messages come before the ones of the
+	 * commands sent later, so they must not be credited to those.
+	 */
+	private int lateAcknowledgements = 0;
+
+	/** time in ms the last command expired */
+	private long lastExpired = 0;
 
 	private boolean previousOnline = false;
 
 	private List<DeviceStatusListener> deviceStatusListeners = new CopyOnWriteArrayList<>();
 
+	/**
+	 * Tracks which devices are reported by the cube. A single job takes the
+	 * devices offline which have not been reported for the device timeout.
+	 */
+	private final DeviceLivenessTracker livenessTracker = new DeviceLivenessTracker();
+	private final List<Device> receivedDevices = new ArrayList<Device>();
+	private static final long LIVENESS_CHECK_INTERVAL = 60000;
+	private static final long MIN_DEVICE_TIMEOUT = 60000;
+	private long deviceTimeout = MIN_DEVICE_TIMEOUT;
+	private ScheduledFuture<?> livenessJob;
+	private Runnable livenessRunnable = new Runnable() {
+		@Override
+		public void run() {
+			expireDevices();
+		}
+	};
+
+	/** health figures of the connection, published on the bridge channels */
+	private final MaxCubeMetrics metrics = new MaxCubeMetrics();
+	private List<MaxCubeMetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
+	private final Map<String, State> publishedMetrics = new HashMap<String, State>();
+	private final Map<String, ChannelUID> channelUIDs = new HashMap<String, ChannelUID>();
+
 	private ScheduledFuture<?> pollingJob;
 	private Runnable pollingRunnable = new Runnable() {
 		@Override
@@ -131,8 +288,19 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 			refreshData();
 		}
 	};
+	private Runnable refreshRunnable = new Runnable() {
+		@Override
+		public void run() {
+			scheduledRefresh();
+		}
+	};
+	private Runnable adaptivePollingRunnable = new Runnable() {
+		@Override
+		public void run() {
+			adaptivePoll();
+		}
+	};
 	private ScheduledFuture<?> sendCommandJob;
-	private long sendCommandInterval = 5000;
 	private Runnable sendCommandRunnable = new Runnable() {
 		@Override
 		public void run() {
@@ -144,7 +312,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	public void handleCommand(ChannelUID channelUID, Command command) {
 		if (command instanceof RefreshType) {
 			logger.debug("Refresh command received.");
-			refreshData();
+			requestRefresh();
 		} else
 			logger.warn("No bridge commands defined.");
 	}
@@ -152,6 +320,13 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	@Override
 	public void dispose() {
 		logger.debug("Handler disposed.");
+		synchronized (this) {
+			polling = false;
+			if (refreshJob != null) {
+				refreshJob.cancel(false);
+				refreshJob = null;
+			}
+		}
 		if (pollingJob != null && !pollingJob.isCancelled()) {
 			pollingJob.cancel(true);
 			pollingJob = null;
@@ -160,11 +335,27 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 			sendCommandJob.cancel(true);
 			sendCommandJob = null;
 		}
+		if (livenessJob != null && !livenessJob.isCancelled()) {
+			livenessJob.cancel(true);
+			livenessJob = null;
+		}
+		// the devices are not reported anymore
+		for (String serialNumber : livenessTracker.clear()) {
+			notifyDeviceStatus(serialNumber, ThingStatus.OFFLINE);
+		}
 
 		clearDeviceList();
 		connectionEstablished = false;
 
-		socketClose();
+		synchronized (this) {
+			closeConnection();
+			connectionEvents.clear();
+			publishedMetrics.clear();
+			if (engine != null) {
+				MaxCubeConnectionEngine.release();
+				engine = null;
+			}
+		}
 		super.dispose();
 	}
 
@@ -178,81 +369,623 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 		refreshInterval = configuration.refreshInterval;
 		exclusive = configuration.exclusive;
 		maxRequestsPerConnection = configuration.maxRequestsPerConnection;
+		streaming = exclusive && configuration.streaming;
+		if (configuration.fallbackRefreshInterval != null) {
+			fallbackRefreshInterval = configuration.fallbackRefreshInterval;
+		}
+		if (configuration.adaptiveRefresh) {
+			long minRefreshInterval = configuration.minRefreshInterval != null ? configuration.minRefreshInterval
+					: DEFAULT_MIN_REFRESH_INTERVAL;
+			long maxRefreshInterval = configuration.maxRefreshInterval != null ? configuration.maxRefreshInterval
+					: DEFAULT_MAX_REFRESH_INTERVAL;
+			adaptiveRefresh = new AdaptiveRefreshInterval(minRefreshInterval, refreshInterval, maxRefreshInterval);
+		} else {
+			adaptiveRefresh = null;
+		}
 		logger.debug("Cube IP         {}.", ipAddress);
 		logger.debug("Port            {}.", port);
 		logger.debug("RefreshInterval {}.", refreshInterval);
 		logger.debug("Exclusive mode  {}.", exclusive);
 		logger.debug("Max Requests    {}.", maxRequestsPerConnection);
+		logger.debug("Streaming mode  {}.", streaming);
+		logger.debug("Adaptive mode   {}.", adaptiveRefresh != null);
+
+		// devices are offline after missing three polls
+		long longestInterval = Math.max(refreshInterval, adaptiveRefresh != null ? adaptiveRefresh.getMaxInterval() : 0);
+		if (streaming) {
+			longestInterval = Math.max(longestInterval, fallbackRefreshInterval);
+		}
+		deviceTimeout = Math.max(MIN_DEVICE_TIMEOUT, 3 * longestInterval);
+		if (configuration.streaming && !exclusive) {
+			logger.info("Streaming mode requires exclusive mode, polling the MAX! Cube instead.");
+		}
+
+		loadSnapshot(configuration.serialNumber);
+
+		try {
+			synchronized (this) {
+				if (engine == null) {
+					engine = MaxCubeConnectionEngine.acquire();
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Cannot start the MAX! Cube connection engine: {}", e.getMessage());
+			updateStatus(ThingStatus.OFFLINE);
+			return;
+		}
 
 		startAutomaticRefresh();
+		if (livenessJob == null || livenessJob.isCancelled()) {
+			livenessJob = scheduler.scheduleWithFixedDelay(livenessRunnable, LIVENESS_CHECK_INTERVAL,
+					LIVENESS_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+		}
 
 		// workaround for issue #92: getHandler() returns NULL after
 		// configuration update. :
 		getThing().setHandler(this);
 	}
 
+	/**
+	 * Loads the rooms and device configurations stored by a previous run and
+	 * creates the devices, so they are available and online before the cube
+	 * sent its configuration. The snapshot is reconciled with the M and C
+	 * messages of the cube.
+	 */
+	private void loadSnapshot(String serialNumber) {
+		if (snapshotFolder == null) {
+			return;
+		}
+		String name = serialNumber != null && !serialNumber.trim().isEmpty() ? serialNumber.trim()
+				: getThing().getUID().getId();
+		snapshotFile = new File(snapshotFolder, "maxcube-" + name.replaceAll("[^A-Za-z0-9_-]", "_") + ".snapshot");
+		if (!snapshotFile.exists()) {
+			return;
+		}
+		try {
+			int count = ConfigurationSnapshot.read(snapshotFile, deviceRegistry);
+			for (DeviceConfiguration c : deviceRegistry.getConfigurations()) {
+				if (deviceRegistry.getDevice(c.getSerialNumber()) == null) {
+					deviceRegistry.addDevice(Device.create(c));
+				}
+			}
+			lastSnapshot = ConfigurationSnapshot.encode(deviceRegistry);
+			// the devices are online until the first L message, or until the
+			// device timeout elapsed without the cube reporting them
+			for (String deviceSerialNumber : livenessTracker.seen(deviceRegistry.getDevices(),
+					System.currentTimeMillis())) {
+				notifyDeviceStatus(deviceSerialNumber, ThingStatus.ONLINE);
+			}
+			logger.debug("Loaded {} device configurations from {}", count, snapshotFile);
+		} catch (IOException e) {
+			logger.debug("Cannot read MAX! Cube snapshot {}: {}", snapshotFile, e.getMessage());
+		}
+	}
+
+	/**
+	 * Stores the rooms and device configurations if they changed since they
+	 * were stored last.
+	 */
+	private void saveSnapshot() {
+		if (snapshotFile == null || !configurationChanged) {
+			return;
+		}
+		configurationChanged = false;
+		final byte[] snapshot = ConfigurationSnapshot.encode(deviceRegistry);
+		if (Arrays.equals(snapshot, lastSnapshot)) {
+			return;
+		}
+		lastSnapshot = snapshot;
+		pendingSnapshot.set(snapshot);
+		scheduler.execute(snapshotWriteRunnable);
+	}
+
+	/**
+	 * Writes the latest snapshot saved, if it has not been written yet.
+	 */
+	private void writeSnapshot() {
+		synchronized (snapshotWriteLock) {
+			byte[] snapshot = pendingSnapshot.getAndSet(null);
+			File file = snapshotFile;
+			if (snapshot == null || file == null) {
+				return;
+			}
+			try {
+				ConfigurationSnapshot.write(file, snapshot);
+				logger.debug("Stored MAX! Cube configuration snapshot {}", file);
+			} catch (IOException e) {
+				logger.debug("Cannot write MAX! Cube snapshot {}: {}", file, e.getMessage());
+			}
+		}
+	}
+
 	private synchronized void startAutomaticRefresh() {
-		if (pollingJob == null || pollingJob.isCancelled()) {
+		polling = true;
+		if (adaptiveRefresh != null) {
+			schedulePoll(0);
+		} else if (pollingJob == null || pollingJob.isCancelled()) {
 			pollingJob = scheduler.scheduleAtFixedRate(pollingRunnable, 0, refreshInterval, TimeUnit.MILLISECONDS);
 		}
-		if (sendCommandJob == null || sendCommandJob.isCancelled()) {
-			sendCommandJob = scheduler.scheduleAtFixedRate(sendCommandRunnable, 0, sendCommandInterval,
-					TimeUnit.MILLISECONDS);
+		if (!commandQueue.isEmpty()) {
+			scheduleSendCommands(0);
+		}
+	}
+
+	/**
+	 * Schedules the next poll in adaptive refresh mode after the given delay,
+	 * unless it is already scheduled to run earlier.
+	 * 
+	 * @param delay
+	 *            the delay in ms
+	 */
+	private synchronized void schedulePoll(long delay) {
+		if (!polling) {
+			return;
+		}
+		if (pollingJob != null && !pollingJob.isDone()) {
+			if (pollingJob.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+				return;
+			}
+			pollingJob.cancel(false);
+		}
+		pollingJob = scheduler.schedule(adaptivePollingRunnable, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Polls the cube and schedules the next poll with the current adaptive
+	 * refresh interval.
+	 */
+	private synchronized void adaptivePoll() {
+		pollingJob = null;
+		refreshData();
+		if (adaptiveRefresh != null) {
+			schedulePoll(adaptiveRefresh.getInterval());
 		}
 	}
 
 	/**
-	 * Takes a command from the command queue and send it to
-	 * {@link executeCommand} for execution.
+	 * Updates the adaptive refresh interval with the changes decoded from the
+	 * last L message. Only the devices contained in that message are taken
+	 * into account, the change flags of the other devices are left over from
+	 * an earlier message.
+	 */
+	private void updateRefreshInterval() {
+		boolean moving = false;
+		boolean changed = false;
+		for (Device device : receivedDevices) {
+			if (device.isChanged(CHANNEL_VALVE) || device.isChanged(CHANNEL_CONTACT_STATE)) {
+				moving = true;
+			}
+			if (device.isUpdated()) {
+				changed = true;
+			}
+		}
+		adaptiveRefresh.pollCompleted(moving, changed);
+		logger.trace("Next poll of MAX! Cube in {} ms.", adaptiveRefresh.getInterval());
+		schedulePoll(adaptiveRefresh.getInterval());
+	}
+
+	/**
+	 * Polls the cube for a refresh command. The refresh commands for several
+	 * channels, which usually arrive together, are answered by a single poll.
+	 * A refresh requested while a poll is pending is answered by that poll,
+	 * see {@link #refreshData}.
+	 */
+	private synchronized void requestRefresh() {
+		// publish all metrics with the next update
+		publishedMetrics.clear();
+		scheduleRefresh(REFRESH_COALESCE_DELAY);
+	}
+
+	/**
+	 * Schedules a single poll after the given delay, unless a poll is already
+	 * scheduled.
 	 * 
+	 * @param delay
+	 *            the delay in ms
+	 */
+	private synchronized void scheduleRefresh(long delay) {
+		if (!polling) {
+			return;
+		}
+		if (refreshJob != null && !refreshJob.isDone()) {
+			return;
+		}
+		refreshJob = scheduler.schedule(refreshRunnable, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void scheduledRefresh() {
+		refreshJob = null;
+		refreshData();
+	}
+
+	/**
+	 * Schedules {@link #sendCommands} to run after the given delay, unless it
+	 * is already scheduled to run earlier.
+	 * 
+	 * @param delay
+	 *            the delay in ms
+	 */
+	private synchronized void scheduleSendCommands(long delay) {
+		if (sendCommandJob != null && !sendCommandJob.isDone()) {
+			if (sendCommandJob.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+				return;
+			}
+			sendCommandJob.cancel(false);
+		}
+		sendCommandJob = scheduler.schedule(sendCommandRunnable, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Takes the next command from the command queue and send it to
+	 * {@link executeCommand} for execution. Up to
+	 * {@link #MAX_COMMANDS_IN_FLIGHT} commands are sent without waiting for
+	 * their acknowledgements, paced by the duty cycle budget of the cube, see
+	 * {@link DutyCycleBudget}. Commands which are not acknowledged in time are
+	 * completed as timed out.
 	 */
 	private synchronized void sendCommands() {
+		sendCommandJob = null;
+		expireCommands();
+
+		long now = System.currentTimeMillis();
+		if (lateAcknowledgements > 0) {
+			if (!inFlightCommands.isEmpty() || now - lastExpired < DutyCycleBudget.RESPONSE_TIMEOUT) {
+				// no new commands until the S messages of the expired ones are received
+				scheduleSendCommands(Math.max(0, lastExpired + DutyCycleBudget.RESPONSE_TIMEOUT - now));
+				return;
+			}
+			logger.debug("No late acknowledgement from MAX! Cube for {} expired commands, reconnecting.",
+					lateAcknowledgements);
+			closeConnection();
+		}
+		if (inFlightCommands.size() >= MAX_COMMANDS_IN_FLIGHT) {
+			// rescheduled earlier when the S message is received
+			scheduleSendCommands(inFlightCommands.peek().sent + DutyCycleBudget.RESPONSE_TIMEOUT - now);
+			return;
+		}
+		long sendDelay = dutyCycleBudget.getSendDelay();
+		if (now - lastCommandSent < sendDelay) {
+			scheduleSendCommands(sendDelay - (now - lastCommandSent));
+			return;
+		}
+		if (connection == null || !connection.isOpen()) {
+			long connectDelay = connectionPolicy.getConnectDelay(now);
+			if (connectDelay > 0) {
+				scheduleSendCommands(connectDelay);
+				return;
+			}
+		}
+
+		SendCommand sendCommand;
+		while ((sendCommand = commandQueue.poll()) != null) {
+			if (!sendCommand.getFuture().isCancelled()) {
+				lastCommandSent = now;
+				executeCommand(sendCommand, takeRoomCommands(sendCommand));
+				break;
+			}
+			logger.debug("Command {} ({}) cancelled.", sendCommand.getId(), sendCommand.getKey());
+		}
+
+		if (!commandQueue.isEmpty()) {
+			scheduleSendCommands(dutyCycleBudget.getSendDelay());
+		} else if (!inFlightCommands.isEmpty()) {
+			// expire the commands which will not be acknowledged
+			scheduleSendCommands(inFlightCommands.peek().sent + DutyCycleBudget.RESPONSE_TIMEOUT - now);
+		}
+		closeIfIdle();
+	}
 
-		SendCommand sendCommand = commandQueue.poll();
-		if (sendCommand != null) {
-			executeCommand(sendCommand);
+	/**
+	 * Completes the sent commands which have not been acknowledged within
+	 * {@link DutyCycleBudget#RESPONSE_TIMEOUT}.
+	 */
+	private void expireCommands() {
+		long now = System.currentTimeMillis();
+		InFlightCommand oldest;
+		while ((oldest = inFlightCommands.peek()) != null && now - oldest.sent >= DutyCycleBudget.RESPONSE_TIMEOUT) {
+			inFlightCommands.poll();
+			lateAcknowledgements++;
+			lastExpired = now;
+			logger.debug("No acknowledgement from MAX! Cube for command {} ({}).", oldest.command.getId(),
+					oldest.command.getKey());
+			completeCommands(oldest.command, oldest.folded, new CommandResult(CommandResult.Status.TIMEOUT));
+		}
+	}
+
+	/**
+	 * Takes the queued commands which set the same value on the same channel
+	 * of other thermostats in the room of the given command. The S command
+	 * addresses the room of the thermostat, so the cube applies it to all
+	 * thermostats of the room and the folded commands need not be sent.
+	 * 
+	 * @param sendCommand
+	 *            the command to be sent
+	 * @return the commands folded into the given command
+	 */
+	private List<SendCommand> takeRoomCommands(SendCommand sendCommand) {
+		int roomId = getRoomId(sendCommand);
+		if (roomId <= 0 || !isRoomCommand(sendCommand)) {
+			return Collections.emptyList();
+		}
+		List<SendCommand> folded = new ArrayList<SendCommand>();
+		String channelId = sendCommand.getChannelUID().getId();
+		for (SendCommand queued : commandQueue.getCommands()) {
+			if (queued.getChannelUID().getId().equals(channelId)
+					&& queued.getCommand().toString().equals(sendCommand.getCommand().toString())
+					&& getRoomId(queued) == roomId && !queued.getFuture().isCancelled() && commandQueue.remove(queued)) {
+				folded.add(queued);
+			}
+		}
+		if (!folded.isEmpty()) {
+			commandsFolded += folded.size();
+			logger.debug("Command {} ({}) sent for {} more thermostats of room {}.", sendCommand.getId(),
+					sendCommand.getKey(), folded.size(), roomId);
+		}
+		return folded;
+	}
+
+	/**
+	 * @return the room of the thermostat addressed by the command as defined
+	 *         by the M message, or -1 if unknown
+	 */
+	private int getRoomId(SendCommand sendCommand) {
+		Device device = deviceRegistry.getDevice(sendCommand.getDeviceSerial());
+		if (!(device instanceof HeatingThermostat)) {
+			return -1;
+		}
+		return device.getRoomId();
+	}
+
+	/**
+	 * Returns whether the command sets the same value for every thermostat.
+	 * Manual mode is set together with the setpoint of each thermostat, so it
+	 * cannot be shared.
+	 */
+	private boolean isRoomCommand(SendCommand sendCommand) {
+		String channelId = sendCommand.getChannelUID().getId();
+		Command command = sendCommand.getCommand();
+		if (channelId.equals(CHANNEL_SETTEMP)) {
+			return command instanceof DecimalType || command instanceof OnOffType;
+		}
+		if (channelId.equals(CHANNEL_MODE) && command instanceof StringType) {
+			String mode = command.toString().trim().toUpperCase();
+			return mode.equals(ThermostatModeType.AUTOMATIC.toString()) || mode.equals(ThermostatModeType.BOOST.toString());
+		}
+		return false;
+	}
+
+	/**
+	 * Completes a command and the commands folded into it.
+	 */
+	private void completeCommands(SendCommand sendCommand, List<SendCommand> folded, CommandResult result) {
+		sendCommand.getFuture().complete(result);
+		for (SendCommand foldedCommand : folded) {
+			foldedCommand.getFuture().complete(result);
 		}
 	}
 
 	/**
-	 * initiates read data from the maxCube bridge
+	 * Completes all sent commands as failed, their acknowledgements will not
+	 * be received anymore.
+	 */
+	private void failInFlightCommands() {
+		InFlightCommand inFlight;
+		while ((inFlight = inFlightCommands.poll()) != null) {
+			completeCommands(inFlight.command, inFlight.folded, new CommandResult(CommandResult.Status.FAILED));
+		}
+	}
+
+	/**
+	 * @return the number of commands waiting to be sent to the MAX! Cube
+	 */
+	public int getCommandQueueSize() {
+		return commandQueue.size();
+	}
+
+	/**
+	 * @return the number of queued commands replaced by a newer command for
+	 *         the same device and channel
+	 */
+	public long getCommandsMerged() {
+		return commandQueue.getMergedCount();
+	}
+
+	/**
+	 * @return the number of commands dropped because the queue was full
+	 */
+	public long getCommandsDropped() {
+		return commandQueue.getDroppedCount();
+	}
+
+	/**
+	 * @return the number of commands which were not sent because a room
+	 *         command for the same value was sent to another thermostat
+	 */
+	public synchronized long getCommandsFolded() {
+		return commandsFolded;
+	}
+
+	/**
+	 * @return the expected time in ms until all queued commands are sent
+	 */
+	public long getExpectedDrainTime() {
+		return dutyCycleBudget.getExpectedDrainTime(commandQueue.size());
+	}
+
+	/**
+	 * @return the health figures of the connection to the MAX! Cube
+	 */
+	public MaxCubeMetrics getMetrics() {
+		return metrics;
+	}
+
+	public boolean registerMetricsListener(MaxCubeMetricsListener metricsListener) {
+		if (metricsListener == null) {
+			throw new NullPointerException("It's not allowed to pass a null metricsListener.");
+		}
+		return metricsListeners.add(metricsListener);
+	}
+
+	public boolean unregisterMetricsListener(MaxCubeMetricsListener metricsListener) {
+		return metricsListeners.remove(metricsListener);
+	}
+
+	/**
+	 * Updates the bridge channels whose metric changed and passes the metrics
+	 * to the registered {@link MaxCubeMetricsListener}s.
+	 */
+	private void publishMetrics() {
+		metrics.setCommandQueueDepth(commandQueue.size());
+		metrics.setRequestCount(requestCount, maxRequestsPerConnection);
+
+		updateMetric(CHANNEL_POLL_LATENCY, metrics.getLastPollLatency());
+		updateMetric(CHANNEL_POLL_BYTES, metrics.getLastPollBytes());
+		updateMetric(CHANNEL_POLL_LINES, metrics.getLastPollLines());
+		updateMetric(CHANNEL_PARSE_FAILURES, metrics.getParseFailures());
+		updateMetric(CHANNEL_RECONNECTS, metrics.getReconnects());
+		updateMetric(CHANNEL_REQUEST_COUNT, metrics.getRequestCount());
+		updateMetric(CHANNEL_COMMAND_QUEUE, metrics.getCommandQueueDepth());
+		updateMetric(CHANNEL_COMMAND_WAIT, metrics.getLastCommandWait());
+		updateMetric(CHANNEL_DUTY_CYCLE, metrics.getDutyCycle());
+		updateMetric(CHANNEL_FREE_MEMORY_SLOTS, metrics.getFreeMemorySlots());
+
+		for (MaxCubeMetricsListener metricsListener : metricsListeners) {
+			try {
+				metricsListener.onMetricsUpdated(getThing().getUID(), metrics);
+			} catch (Exception e) {
+				logger.error("An exception occurred while calling the MaxCubeMetricsListener", e);
+			}
+		}
+	}
+
+	/**
+	 * Updates a bridge channel if its value changed, unknown values (-1) are
+	 * not published.
+	 */
+	private void updateMetric(String channelId, long value) {
+		if (value < 0) {
+			return;
+		}
+		State state = new DecimalType(value);
+		if (state.equals(publishedMetrics.get(channelId))) {
+			return;
+		}
+		publishedMetrics.put(channelId, state);
+		ChannelUID channelUID = channelUIDs.get(channelId);
+		if (channelUID == null) {
+			channelUID = new ChannelUID(getThing().getUID(), channelId);
+			channelUIDs.put(channelId, channelUID);
+		}
+		updateState(channelUID, state);
+	}
+
+	/**
+	 * initiates read data from the maxCube bridge. The request is sent
+	 * without waiting for the answer, the received lines are processed as
+	 * they arrive in {@link #processLine}.
 	 */
 	private synchronized void refreshData() {
 
 		try {
-			refreshDeviceData();
-			if (connectionEstablished) {
-				updateStatus(ThingStatus.ONLINE);
-				previousOnline = true;
-				for (Device di : devices) {
-					if (lastActiveDevices != null && lastActiveDevices.contains(di.getSerialNumber())) {
-						for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
-							try {
-								deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
-							} catch (Exception e) {
-								logger.error("An exception occurred while calling the DeviceStatusListener", e);
-							}
-						}
-					}
-					// New device, not seen before, pass to Discovery
-					else {
-						for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
-							try {
-								deviceStatusListener.onDeviceAdded(getThing(), di);
-								di.setUpdated(true);
-								deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
-							} catch (Exception e) {
-								logger.error("An exception occurred while calling the DeviceStatusListener", e);
-							}
-							lastActiveDevices.add(di.getSerialNumber());
-						}
-					}
+			if (requestPending) {
+				if (System.currentTimeMillis() - requestStarted < refreshInterval) {
+					logger.debug("State request to MAX! Cube still pending.");
+					return;
 				}
-			} else if (previousOnline)
-				onConnectionLost();
+				logger.debug("No response from MAX! Cube on {} port {}", ipAddress, port);
+				connectionFailed();
+				return;
+			}
+
+			if (streaming && connection != null && connection.isConnected()
+					&& System.currentTimeMillis() - lastStateReceived < fallbackRefreshInterval) {
+				// the cube pushes its state, no need to poll
+				return;
+			}
 
+			if (connection != null && connection.isOpen() && maxRequestsPerConnection > 0
+					&& requestCount >= maxRequestsPerConnection) {
+				logger.debug("maxRequestsPerConnection reached, reconnecting.");
+				metrics.reconnected();
+				closeConnection();
+			}
+
+			if (connection == null || !connection.isOpen()) {
+				long connectDelay = connectionPolicy.getConnectDelay(System.currentTimeMillis());
+				if (connectDelay > 0) {
+					logger.debug("Connecting to MAX! Cube on {} port {} in {} ms", ipAddress, port, connectDelay);
+					scheduleRefresh(connectDelay);
+					return;
+				}
+				// a new connection starts with the full H, M, C and L dump
+				openConnection();
+				requestCount = 0;
+			} else {
+				/*
+				 * if the connection is already open (this happens in exclusive
+				 * mode or while a command is executed), just send a "l:\r\n"
+				 * to get the latest live informations note that "L:\r\n" or
+				 * "l:\n" would not work.
+				 */
+				logger.debug("Sending state request #{} to MAX! Cube", this.requestCount);
+				connection.send("l:");
+				requestCount++;
+			}
+			requestPending = true;
+			requestStarted = System.currentTimeMillis();
+			metrics.pollStarted();
+			metrics.setRequestCount(requestCount, maxRequestsPerConnection);
+		} catch (UnknownHostException e) {
+			logger.debug("Host error occurred during execution: {}", e.getMessage());
+			connectionFailed();
+		} catch (IOException e) {
+			logger.debug("IO error occurred during execution: {}", e.getMessage());
+			connectionFailed();
 		} catch (Exception e) {
 			logger.debug("Exception occurred during execution: {}", e.getMessage(), e);
+			connectionFailed();
+		}
+	}
+
+	/**
+	 * Updates the bridge status and passes the devices of the last L message
+	 * to the registered {@link DeviceStatusListener}s. Devices not seen before
+	 * are passed to discovery. Devices missing from the L message keep the
+	 * change flags of an earlier message, so they are not passed again.
+	 */
+	private void updateDeviceStatus() {
+		updateStatus(ThingStatus.ONLINE);
+		previousOnline = true;
+		Set<String> received = new HashSet<String>();
+		for (Device device : receivedDevices) {
+			received.add(device.getSerialNumber());
+		}
+		for (Device di : deviceRegistry.getDevices()) {
+			if (lastActiveDevices != null && lastActiveDevices.contains(di.getSerialNumber())) {
+				if (!received.contains(di.getSerialNumber())) {
+					continue;
+				}
+				for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+					try {
+						deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
+					} catch (Exception e) {
+						logger.error("An exception occurred while calling the DeviceStatusListener", e);
+					}
+				}
+			}
+			// New device, not seen before, pass to Discovery
+			else {
+				for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+					try {
+						deviceStatusListener.onDeviceAdded(getThing(), di);
+						di.setUpdated(true);
+						deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
+					} catch (Exception e) {
+						logger.error("An exception occurred while calling the DeviceStatusListener", e);
+					}
+					lastActiveDevices.add(di.getSerialNumber());
+				}
+			}
 		}
 	}
 
@@ -264,6 +997,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 
 	public void onConnection() {
 		logger.info("Bridge connected. Updating thing status to ONLINE.");
+		previousOnline = true;
 		updateStatus(ThingStatus.ONLINE);
 	}
 
@@ -286,121 +1020,202 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 		return result;
 	}
 
-	public void clearDeviceList() {
-		lastActiveDevices = new HashSet<String>();
-	}
-
 	/**
-	 * Processes device command and sends it to the MAX!Cube Lan Gateway.
-	 * 
 	 * @param serialNumber
-	 *            the serial number of the device as String
-	 * @param channelUID
-	 *            the ChannelUID used to send the command
-	 * @param command
-	 *            the command data
+	 *            the serial number of the device
+	 * @return true if the device has been reported by the cube recently
 	 */
+	public boolean isDeviceOnline(String serialNumber) {
+		return livenessTracker.isOnline(serialNumber);
+	}
 
 	/**
-	 * Connects to the Max!Cube Lan gateway, reads and decodes the message this
-	 * updates device information for each connected Max!Cube device
+	 * Takes the devices offline which have not been reported by the cube
+	 * within the device timeout.
 	 */
-	private void refreshDeviceData() {
-		Message message;
-
-		for (String raw : getRawMessage()) {
+	private void expireDevices() {
+		for (String serialNumber : livenessTracker.expire(System.currentTimeMillis(), deviceTimeout)) {
+			logger.debug("MAX! device {} not reported for {} ms.", serialNumber, deviceTimeout);
+			notifyDeviceStatus(serialNumber, ThingStatus.OFFLINE);
+		}
+	}
 
+	private void notifyDeviceStatus(String serialNumber, ThingStatus status) {
+		for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
 			try {
-				logger.trace("message block: '{}'", raw);
-				message = processRawMessage(raw);
-				if (message != null) {
-					message.debug(logger);
-					processMessage(message);
-				}
+				deviceStatusListener.onDeviceStatusChanged(getThing().getUID(), serialNumber, status);
 			} catch (Exception e) {
-				logger.info("Failed to process message received by MAX! protocol.");
-				logger.debug(Utils.getStackTrace(e));
+				logger.error("An exception occurred while calling the DeviceStatusListener", e);
 			}
 		}
+	}
+
+	public void clearDeviceList() {
+		lastActiveDevices = new HashSet<String>();
+	}
+
+	@Override
+	public void onLineReceived(MaxCubeConnection source, String line) {
+		connectionEvents.add(new ConnectionEvent(source, line, null));
+		scheduleConnectionEvents();
+	}
 
+	@Override
+	public void onConnectionClosed(MaxCubeConnection source, IOException cause) {
+		connectionEvents.add(new ConnectionEvent(source, null, cause));
+		scheduleConnectionEvents();
 	}
 
 	/**
-	 * Connects to the Max!Cube Lan gateway and returns the read data
-	 * corresponding Message.
-	 * 
-	 * @return the raw message text as ArrayList of String
+	 * Starts processing the connection events on the scheduler, unless they
+	 * are already being processed.
 	 */
-	private ArrayList<String> getRawMessage() {
-		synchronized (MaxCubeBridgeHandler.class) {
-			ArrayList<String> rawMessage = new ArrayList<String>();
-
+	private void scheduleConnectionEvents() {
+		if (processingConnectionEvents.compareAndSet(false, true)) {
 			try {
-				String raw = null;
-				if (socket == null) {
-					this.socketConnect();
-				} else {
-					if (maxRequestsPerConnection > 0 && requestCount >= maxRequestsPerConnection) {
-						logger.debug("maxRequestsPerConnection reached, reconnecting.");
-						socket.close();
-						this.socketConnect();
-						requestCount = 0;
-					} else {
+				scheduler.execute(connectionEventsRunnable);
+			} catch (RejectedExecutionException e) {
+				processingConnectionEvents.set(false);
+				logger.debug("Cannot process the data received from MAX! Cube: {}", e.getMessage());
+			}
+		}
+	}
 
-						/*
-						 * if the connection is already open (this happens in
-						 * exclusive mode), just send a "l:\r\n" to get the
-						 * latest live informations note that "L:\r\n" or "l:\n"
-						 * would not work.
-						 */
-						logger.debug("Sending state request #{} to MAX! Cube", this.requestCount);
-						if (writer == null) {
-							logger.warn("Can't write to MAX! Cube");
-							this.socketConnect();
-						}
-						writer.write("l:" + '\r' + '\n');
-						writer.flush();
-						requestCount++;
+	private void processConnectionEvents() {
+		try {
+			ConnectionEvent event;
+			while ((event = connectionEvents.poll()) != null) {
+				try {
+					if (event.line != null) {
+						processLine(event.source, event.line);
+					} else {
+						processConnectionClosed(event.source, event.cause);
 					}
+				} catch (Exception e) {
+					logger.error("An exception occurred while processing the data received from MAX! Cube", e);
 				}
+			}
+		} finally {
+			processingConnectionEvents.set(false);
+		}
+		// an event may have been added after the queue was found empty
+		if (!connectionEvents.isEmpty()) {
+			scheduleConnectionEvents();
+		}
+	}
 
-				boolean cont = true;
-				while (cont) {
-					raw = reader.readLine();
-					if (raw == null) {
-						cont = false;
-						continue;
-					}
-					rawMessage.add(raw);
-					if (raw.startsWith("L:")) {
-						cont = false;
-						connectionEstablished = true;
-					}
-				}
+	private synchronized void processLine(MaxCubeConnection source, String raw) {
+		if (source != connection) {
+			// line from a connection which has been replaced
+			return;
+		}
+		metrics.lineReceived(raw.length());
+		if (raw.startsWith("H:")) {
+			// the cube answers every new connection with the H message
+			connectionPolicy.connected(System.currentTimeMillis());
+			if (!previousOnline) {
+				onConnection();
+			}
+		}
+		try {
+			logger.trace("message block: '{}'", raw);
+			Message message = processRawMessage(raw);
+			if (message != null) {
+				message.debug(logger);
+				processMessage(message);
+			}
+		} catch (Exception e) {
+			logger.info("Failed to process message received by MAX! protocol.");
+			logger.debug(Utils.getStackTrace(e));
+			metrics.parseFailed();
+		}
 
-				if (!exclusive) {
-					socketClose();
-				}
-			} catch (ConnectException e) {
-				logger.debug("Connection timed out on {} port {}", ipAddress, port);
-				connectionEstablished = false;
-				socketClose(); // reconnect on next execution
-			} catch (UnknownHostException e) {
-				logger.debug("Host error occurred during execution: {}", e.getMessage());
-				connectionEstablished = false;
-				socketClose(); // reconnect on next execution
-			} catch (IOException e) {
-				logger.debug("IO error occurred during execution: {}", e.getMessage());
-				connectionEstablished = false;
-				socketClose(); // reconnect on next execution
-			} catch (Exception e) {
-				logger.debug("Exception occurred during execution: {}", e.getMessage(), e);
-				connectionEstablished = false;
-				socketClose(); // reconnect on next execution
+		if (raw.startsWith("L:")) {
+			lastStateReceived = System.currentTimeMillis();
+			metrics.pollCompleted(requestPending ? lastStateReceived - requestStarted : -1);
+			requestPending = false;
+			connectionEstablished = true;
+			logger.trace("{} devices found.", deviceRegistry.size());
+			saveSnapshot();
+			if (adaptiveRefresh != null) {
+				updateRefreshInterval();
+			}
+			updateDeviceStatus();
+			publishMetrics();
+		} else if (raw.startsWith("S:")) {
+			if (!commandQueue.isEmpty()) {
+				scheduleSendCommands(dutyCycleBudget.getSendDelay());
 			}
+			publishMetrics();
+		}
+		closeIfIdle();
+	}
+
+	private synchronized void processConnectionClosed(MaxCubeConnection source, IOException cause) {
+		if (source != connection) {
+			return;
+		}
+		logger.debug("IO error occurred during execution: {}", cause.getMessage());
+		connectionFailed();
+	}
+
+	/**
+	 * Opens a new connection to the cube. The cube answers a new connection
+	 * with the H, M, C and L messages.
+	 */
+	private void openConnection() throws IOException {
+		connectionPolicy.connecting(System.currentTimeMillis());
+		connection = new MaxCubeConnection(engine, ipAddress, port, this);
+		connection.open();
+		metrics.connectionOpened();
+	}
+
+	/**
+	 * Closes the connection if not in exclusive mode and all requests and
+	 * commands have been answered.
+	 */
+	private void closeIfIdle() {
+		if (!exclusive && !requestPending && inFlightCommands.isEmpty()) {
+			closeConnection();
+		}
+	}
+
+	private void closeConnection() {
+		if (connection != null) {
+			connection.close();
+			connection = null;
+			connectionPolicy.closed(System.currentTimeMillis());
+		}
+		requestPending = false;
+		failInFlightCommands();
+		// a new connection receives no acknowledgements of earlier commands
+		lateAcknowledgements = 0;
+	}
 
-			return rawMessage;
+	/**
+	 * Closes the connection after an error, it is reopened on the next
+	 * refresh.
+	 */
+	private void connectionFailed() {
+		metrics.reconnected();
+		closeConnection();
+		connectionEstablished = false;
+		MaxCubeConnectionPolicy.CircuitState circuitState = connectionPolicy.failed(System.currentTimeMillis());
+		if (circuitState == MaxCubeConnectionPolicy.CircuitState.OPEN) {
+			logger.warn("MAX! Cube on {} port {} failed {} times, retrying in {} s", ipAddress, port,
+					connectionPolicy.getFailures(), connectionPolicy.getConnectDelay(System.currentTimeMillis()) / 1000);
+		} else {
+			logger.debug("Reconnecting to MAX! Cube in {} ms (failure {}, reconnect interval {} ms)",
+					connectionPolicy.getConnectDelay(System.currentTimeMillis()), connectionPolicy.getFailures(),
+					connectionPolicy.getReconnectInterval());
 		}
+		if (previousOnline) {
+			onConnectionLost();
+		} else if (getThing().getStatus() != ThingStatus.OFFLINE) {
+			updateStatus(ThingStatus.OFFLINE);
+		}
+		// retry once the policy allows it, not only on the next refresh
+		scheduleRefresh(connectionPolicy.getConnectDelay(System.currentTimeMillis()));
 	}
 
 	/**
@@ -425,6 +1240,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 			return new S_Message(raw);
 		} else {
 			logger.debug("Unknown message block: '{}'", raw);
+			metrics.parseFailed();
 		}
 		return null;
 	}
@@ -439,64 +1255,80 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 
 		if (message != null) {
 			message.debug(logger);
-			if (message.getType() == MessageType.M) {
+			metrics.messageReceived(message.getType());
+			if (message.getType() == MessageType.H) {
+				H_Message msg = (H_Message) message;
+				dutyCycle = msg.getDutyCycle();
+				freeMemorySlots = msg.getFreeMemorySlots();
+				metrics.setRadioState(dutyCycle, freeMemorySlots);
+				dutyCycleBudget.update(dutyCycle, freeMemorySlots, System.currentTimeMillis());
+				if (!commandQueue.isEmpty()) {
+					scheduleSendCommands(dutyCycleBudget.getSendDelay());
+				}
+			} else if (message.getType() == MessageType.M) {
 				M_Message msg = (M_Message) message;
-				for (DeviceInformation di : msg.devices) {
-					DeviceConfiguration c = null;
-					for (DeviceConfiguration conf : configurations) {
-						if (conf.getSerialNumber().equalsIgnoreCase(di.getSerialNumber())) {
-							c = conf;
-							break;
-						}
+				if (msg.devices != null) {
+					List<String> serialNumbers = new ArrayList<String>();
+					for (DeviceInformation di : msg.devices) {
+						DeviceConfiguration c = DeviceConfiguration.create(di);
+						c.setRoomId(di.getRoomId());
+						deviceRegistry.putConfiguration(c);
+						serialNumbers.add(di.getSerialNumber());
 					}
-
-					if (c != null) {
-						configurations.remove(c);
-					}
-
-					c = DeviceConfiguration.create(di);
-					configurations.add(c);
-
-					c.setRoomId(di.getRoomId());
+					// drop devices which have been removed from the cube
+					deviceRegistry.retainConfigurations(serialNumbers);
+					deviceRegistry.setRooms(msg.rooms);
+					configurationChanged = true;
 				}
 			} else if (message.getType() == MessageType.C) {
-				DeviceConfiguration c = null;
-				for (DeviceConfiguration conf : configurations) {
-					if (conf.getSerialNumber().equalsIgnoreCase(((C_Message) message).getSerialNumber())) {
-						c = conf;
-						break;
-					}
-				}
+				DeviceConfiguration c = deviceRegistry.getConfiguration(((C_Message) message).getSerialNumber());
 
 				if (c == null) {
-					configurations.add(DeviceConfiguration.create(message));
+					c = DeviceConfiguration.create(message);
 				} else {
 					c.setValues((C_Message) message);
 				}
+				// re-index, the RF address may have changed
+				deviceRegistry.putConfiguration(c);
+				configurationChanged = true;
 			} else if (message.getType() == MessageType.L) {
-				((L_Message) message).updateDevices(devices, configurations);
-				logger.trace("{} devices found.", devices.size());
+				receivedDevices.clear();
+				((L_Message) message).updateDevices(deviceRegistry, messageDecoder, receivedDevices);
+				logger.trace("{} devices found.", deviceRegistry.size());
+				for (String serialNumber : livenessTracker.seen(receivedDevices, System.currentTimeMillis())) {
+					notifyDeviceStatus(serialNumber, ThingStatus.ONLINE);
+				}
 			} else if (message.getType() == MessageType.S) {
-				dutyCycle = ((S_Message) message).getDutyCycle();
-				freeMemorySlots = ((S_Message) message).getFreeMemorySlots();
+				S_Message msg = (S_Message) message;
+				dutyCycle = msg.getDutyCycle();
+				freeMemorySlots = msg.getFreeMemorySlots();
+				metrics.setRadioState(dutyCycle, freeMemorySlots);
+				InFlightCommand acknowledged = null;
+				if (lateAcknowledgements > 0) {
+					// the command has already been completed as timed out
+					lateAcknowledgements--;
+					logger.debug("Late S message for an expired command received.");
+				} else {
+					acknowledged = inFlightCommands.poll();
+					if (acknowledged == null) {
+						logger.debug("S message without a pending command received.");
+					}
+				}
+				dutyCycleBudget.update(msg, acknowledged != null ? System.currentTimeMillis() - acknowledged.sent : -1);
+				if (acknowledged != null) {
+					completeCommands(acknowledged.command, acknowledged.folded, new CommandResult(
+							msg.isCommandDiscarded() ? CommandResult.Status.DISCARDED : CommandResult.Status.ACCEPTED,
+							dutyCycle, freeMemorySlots));
+				}
 				if (((S_Message) message).isCommandDiscarded()) {
-					logger.info("Last Send Command discarded. Duty Cycle: {}, Free Memory Slots: {}", dutyCycle,
-							freeMemorySlots);
+					logger.info("Last Send Command discarded. Duty Cycle: {}, Free Memory Slots: {}, retry in {} ms",
+							dutyCycle, freeMemorySlots, dutyCycleBudget.getSendDelay());
 				} else
 					logger.debug("S message. Duty Cycle: {}, Free Memory Slots: {}", dutyCycle, freeMemorySlots);
 			}
 		}
 	}
 
-	private Device getDevice(String serialNumber, ArrayList<Device> devices) {
-		for (Device device : devices) {
-			if (device.getSerialNumber().toUpperCase().equals(serialNumber)) {
-				return device;
-			}
-		}
-		return null;
-	}
-
 	/**
 	 * Returns the MAX! Device decoded during the last refreshData
 	 * 
@@ -506,38 +1338,49 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	 */
 
 	public Device getDevice(String serialNumber) {
-		return getDevice(serialNumber, devices);
+		return deviceRegistry.getDevice(serialNumber);
+	}
+
+	/**
+	 * Returns the registry with the MAX! devices and configurations decoded
+	 * from the messages of the cube
+	 * 
+	 * @return the {@link DeviceRegistry} of this bridge
+	 */
+	public DeviceRegistry getDeviceRegistry() {
+		return deviceRegistry;
 	}
 
 	/**
 	 * Takes the device command and puts it on the command queue to be processed
 	 * by the MAX!Cube Lan Gateway. Note that if multiple commands for the same
 	 * item-channel combination are send prior that they are processed by the
-	 * Max!Cube, they will be removed from the queue as they would not be
-	 * meaningful. This will improve the behavior when using sliders in the GUI.
+	 * Max!Cube, only the latest one is kept in the queue as the others would
+	 * not be meaningful. This will improve the behavior when using sliders in
+	 * the GUI.
 	 * 
 	 * @param SendCommand
 	 *            the SendCommand containing the serial number of the device as
 	 *            String the channelUID used to send the command and the the
 	 *            command data
 	 */
-	public synchronized void queueCommand(SendCommand sendCommand) {
-
-		if (commandQueue.offer(sendCommand)) {
-			if (lastCommandId != null) {
-				if (lastCommandId.getKey().equals(sendCommand.getKey())) {
-					if (commandQueue.remove(lastCommandId))
-						logger.debug("Removed Command id {} ({}) from queue. Superceeded by {}", lastCommandId.getId(),
-								lastCommandId.getKey(), sendCommand.getId());
-				}
-			}
-			lastCommandId = sendCommand;
-			logger.debug("Command queued id {} ({}).", sendCommand.getId(), sendCommand.getKey());
+	public synchronized CommandFuture queueCommand(SendCommand sendCommand) {
 
-		} else {
+		SendCommand replaced = commandQueue.offer(sendCommand);
+		if (replaced == sendCommand) {
 			logger.debug("Command queued full dropping command id {} ({}).", sendCommand.getId(), sendCommand.getKey());
+			sendCommand.getFuture().complete(new CommandResult(CommandResult.Status.DROPPED));
+			return sendCommand.getFuture();
 		}
-
+		if (replaced != null) {
+			logger.debug("Removed Command id {} ({}) from queue. Superceeded by {}", replaced.getId(),
+					replaced.getKey(), sendCommand.getId());
+			replaced.getFuture().complete(new CommandResult(CommandResult.Status.SUPERSEDED));
+		} else {
+			logger.debug("Command queued id {} ({}).", sendCommand.getId(), sendCommand.getKey());
+		}
+		scheduleSendCommands(dutyCycleBudget.getSendDelay());
+		return sendCommand.getFuture();
 	}
 
 	/**
@@ -549,18 +1392,33 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 	 *            command data
 	 */
 	public void executeCommand(SendCommand sendCommand) {
+		executeCommand(sendCommand, Collections.<SendCommand> emptyList());
+	}
+
+	/**
+	 * Sends a command whose room command also applies the given commands.
+	 * 
+	 * @param sendCommand
+	 *            the command to be sent
+	 * @param folded
+	 *            the commands of other thermostats in the same room completed
+	 *            together with the sent command
+	 */
+	private void executeCommand(SendCommand sendCommand, List<SendCommand> folded) {
 
 		String serialNumber = sendCommand.getDeviceSerial();
 		ChannelUID channelUID = sendCommand.getChannelUID();
 		Command command = sendCommand.getCommand();
 
 		// send command to MAX!Cube LAN Gateway
-		HeatingThermostat device = (HeatingThermostat) getDevice(serialNumber, devices);
+		Device found = getDevice(serialNumber);
 
-		if (device == null) {
+		if (!(found instanceof HeatingThermostat)) {
 			logger.debug("Cannot send command to device with serial number {}, device not listed.", serialNumber);
+			completeCommands(sendCommand, folded, new CommandResult(CommandResult.Status.FAILED));
 			return;
 		}
+		HeatingThermostat device = (HeatingThermostat) found;
 
 		String rfAddress = device.getRFAddress();
 		String commandString = null;
@@ -600,61 +1458,80 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 				} else {
 					logger.debug("Only updates to AUTOMATIC & BOOST & MANUAL supported, received value :'{}'",
 							commandContent);
+					completeCommands(sendCommand, folded, new CommandResult(CommandResult.Status.FAILED));
 					return;
 				}
 				commandString = cmd.getCommandString();
 			}
 		}
-		// Actual sending of the data to the Max!Cube Lan Gateway
-		synchronized (MaxCubeBridgeHandler.class) {
+		// Actual sending of the data to the Max!Cube Lan Gateway, the
+		// acknowledgement is processed in processLine
+		synchronized (this) {
 			if (commandString != null) {
 				try {
-					if (socket == null) {
-						this.socketConnect();
+					if (connection == null || !connection.isOpen()) {
+						openConnection();
 					}
-					writer.write(commandString);
-					writer.flush();
-					String raw = reader.readLine();
-					Message message = processRawMessage(raw);
-					if (message != null)
-						processMessage(message);
-					if (!exclusive) {
-						socketClose();
+					connection.send(commandString);
+					long sent = System.currentTimeMillis();
+					inFlightCommands.add(new InFlightCommand(sendCommand, folded, sent));
+					metrics.commandSent(sent - sendCommand.getQueuedTime());
+					if (adaptiveRefresh != null) {
+						// poll soon to pick up the new state of the device
+						adaptiveRefresh.activity();
+						schedulePoll(adaptiveRefresh.getInterval());
 					}
-
+					logger.debug("Command {} ({}) sent to MAX! Cube at IP: {}", sendCommand.getId(),
+							sendCommand.getKey(), ipAddress);
+					logger.trace("Command {} content: '{}'", sendCommand.getId(), commandString);
 				} catch (UnknownHostException e) {
 					logger.warn("Cannot establish connection with MAX! Cube lan gateway while sending command to '{}'",
 							ipAddress);
 					logger.debug(Utils.getStackTrace(e));
-					socketClose(); // reconnect on next execution
+					completeCommands(sendCommand, folded, new CommandResult(CommandResult.Status.FAILED));
+					closeConnection(); // reconnect on next execution
 				} catch (IOException e) {
 					logger.warn("Cannot write data from MAX! Cube lan gateway while connecting to '{}'", ipAddress);
 					logger.debug(Utils.getStackTrace(e));
-					socketClose(); // reconnect on next execution
+					completeCommands(sendCommand, folded, new CommandResult(CommandResult.Status.FAILED));
+					closeConnection(); // reconnect on next execution
 				}
-				logger.debug("Command {} ({}) sent to MAX! Cube at IP: {}", sendCommand.getId(), sendCommand.getKey(),
-						ipAddress);
-				logger.trace("Command {} content: '{}'", sendCommand.getId(), commandString);
 			} else {
 				logger.debug("Null Command not sent to {}", ipAddress);
+				completeCommands(sendCommand, folded, new CommandResult(CommandResult.Status.FAILED));
 			}
 		}
 	}
 
-	private boolean socketConnect() throws UnknownHostException, IOException {
-		socket = new Socket(ipAddress, port);
-		logger.debug("Open new connection... to {} port {}", ipAddress, port);
-		reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-		writer = new OutputStreamWriter(socket.getOutputStream());
-		return true;
+	/**
+	 * A line received from the cube or, if the line is null, the failure of
+	 * the connection.
+	 */
+	private static final class ConnectionEvent {
+		final MaxCubeConnection source;
+		final String line;
+		final IOException cause;
+
+		ConnectionEvent(MaxCubeConnection source, String line, IOException cause) {
+			this.source = source;
+			this.line = line;
+			this.cause = cause;
+		}
 	}
 
-	private void socketClose() {
-		try {
-			socket.close();
-		} catch (Exception e) {
+	/**
+	 * A command sent to the cube and waiting for its S message.
+	 */
+	private static final class InFlightCommand {
+		final SendCommand command;
+		final List<SendCommand> folded;
+		final long sent;
+
+		InFlightCommand(SendCommand command, List<SendCommand> folded, long sent) {
+			this.command = command;
+			this.folded = folded;
+			this.sent = sent;
 		}
-		socket = null;
 	}
 
 }
\ No newline at end of file
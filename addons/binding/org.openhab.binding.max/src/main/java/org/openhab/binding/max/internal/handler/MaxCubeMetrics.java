@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import org.openhab.binding.max.internal.message.MessageType;
+
+/**
+ * The {@link MaxCubeMetrics} collects the health figures of the connection to
+ * one MAX! Cube: how long the cube takes to answer a state request, how much
+ * data it sends, how often messages fail to parse or the connection has to be
+ * reopened and how busy the command queue and the radio of the cube are.
+ *
+ * The values are recorded by the {@link MaxCubeBridgeHandler} and can be read
+ * from any thread.
+ *
+ * @author agent - Initial contribution
+ */
+public final class MaxCubeMetrics {
+
+	private long polls = 0;
+	private long lastPollLatency = -1;
+	private long totalPollLatency = 0;
+	private long maxPollLatency = 0;
+
+	/** data received since the current state request was sent */
+	private int pollBytes = 0;
+	private int pollLines = 0;
+	private int lastPollBytes = 0;
+	private int lastPollLines = 0;
+
+	private long bytesRead = 0;
+	private long linesRead = 0;
+	private final long[] messages = new long[MessageType.values().length];
+	private long parseFailures = 0;
+
+	private long connectionsOpened = 0;
+	private long reconnects = 0;
+	private int requestCount = 0;
+	private int maxRequestsPerConnection = 0;
+
+	private int commandQueueDepth = 0;
+	private long commandsSent = 0;
+	private long lastCommandWait = -1;
+	private long totalCommandWait = 0;
+
+	private int dutyCycle = -1;
+	private int freeMemorySlots = -1;
+
+	/**
+	 * Records that a state request has been sent, the lines received from
+	 * now on are counted for this poll.
+	 */
+	synchronized void pollStarted() {
+		pollBytes = 0;
+		pollLines = 0;
+	}
+
+	/**
+	 * Records that the L message answering a state request has been received.
+	 *
+	 * @param latency
+	 *            the time in ms since the request was sent, or a negative
+	 *            value if the cube sent the message by itself
+	 */
+	synchronized void pollCompleted(long latency) {
+		lastPollBytes = pollBytes;
+		lastPollLines = pollLines;
+		pollBytes = 0;
+		pollLines = 0;
+		if (latency >= 0) {
+			polls++;
+			lastPollLatency = latency;
+			totalPollLatency += latency;
+			maxPollLatency = Math.max(maxPollLatency, latency);
+		}
+	}
+
+	/**
+	 * Records a line received from the cube.
+	 *
+	 * @param length
+	 *            the length of the line without the line terminator
+	 */
+	synchronized void lineReceived(int length) {
+		// the cube terminates every line with \r\n
+		pollBytes += length + 2;
+		pollLines++;
+		bytesRead += length + 2;
+		linesRead++;
+	}
+
+	synchronized void messageReceived(MessageType type) {
+		messages[type.ordinal()]++;
+	}
+
+	synchronized void parseFailed() {
+		parseFailures++;
+	}
+
+	synchronized void connectionOpened() {
+		connectionsOpened++;
+	}
+
+	/**
+	 * Records that a connection had to be reopened because it failed or
+	 * reached the maximum number of requests.
+	 */
+	synchronized void reconnected() {
+		reconnects++;
+	}
+
+	synchronized void setRequestCount(int requestCount, int maxRequestsPerConnection) {
+		this.requestCount = requestCount;
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	synchronized void setCommandQueueDepth(int commandQueueDepth) {
+		this.commandQueueDepth = commandQueueDepth;
+	}
+
+	/**
+	 * Records that a command has been sent.
+	 *
+	 * @param waitTime
+	 *            the time in ms the command waited in the queue
+	 */
+	synchronized void commandSent(long waitTime) {
+		commandsSent++;
+		lastCommandWait = waitTime;
+		totalCommandWait += waitTime;
+	}
+
+	synchronized void setRadioState(int dutyCycle, int freeMemorySlots) {
+		this.dutyCycle = dutyCycle;
+		this.freeMemorySlots = freeMemorySlots;
+	}
+
+	/**
+	 * @return the number of answered state requests
+	 */
+	public synchronized long getPolls() {
+		return polls;
+	}
+
+	/**
+	 * @return the time in ms the cube took to answer the last state request,
+	 *         or -1 if none was answered yet
+	 */
+	public synchronized long getLastPollLatency() {
+		return lastPollLatency;
+	}
+
+	/**
+	 * @return the average time in ms the cube took to answer a state request,
+	 *         or -1 if none was answered yet
+	 */
+	public synchronized long getAveragePollLatency() {
+		return polls == 0 ? -1 : totalPollLatency / polls;
+	}
+
+	/**
+	 * @return the longest time in ms the cube took to answer a state request
+	 */
+	public synchronized long getMaxPollLatency() {
+		return maxPollLatency;
+	}
+
+	/**
+	 * @return the number of bytes received for the last state request
+	 */
+	public synchronized int getLastPollBytes() {
+		return lastPollBytes;
+	}
+
+	/**
+	 * @return the number of lines received for the last state request
+	 */
+	public synchronized int getLastPollLines() {
+		return lastPollLines;
+	}
+
+	/**
+	 * @return the total number of bytes received from the cube
+	 */
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return the total number of lines received from the cube
+	 */
+	public synchronized long getLinesRead() {
+		return linesRead;
+	}
+
+	/**
+	 * @param type
+	 *            the message type
+	 * @return the number of messages of the given type received from the cube
+	 */
+	public synchronized long getMessages(MessageType type) {
+		return messages[type.ordinal()];
+	}
+
+	/**
+	 * @return the number of lines which could not be decoded
+	 */
+	public synchronized long getParseFailures() {
+		return parseFailures;
+	}
+
+	/**
+	 * @return the number of connections opened to the cube
+	 */
+	public synchronized long getConnectionsOpened() {
+		return connectionsOpened;
+	}
+
+	/**
+	 * @return the number of connections reopened after a failure or after
+	 *         reaching the maximum number of requests per connection
+	 */
+	public synchronized long getReconnects() {
+		return reconnects;
+	}
+
+	/**
+	 * @return the number of state requests sent on the current connection
+	 */
+	public synchronized int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * @return the number of state requests after which the connection is
+	 *         reopened, 0 if unlimited
+	 */
+	public synchronized int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	/**
+	 * @return the number of commands waiting to be sent
+	 */
+	public synchronized int getCommandQueueDepth() {
+		return commandQueueDepth;
+	}
+
+	/**
+	 * @return the number of commands sent to the cube
+	 */
+	public synchronized long getCommandsSent() {
+		return commandsSent;
+	}
+
+	/**
+	 * @return the time in ms the last sent command waited in the queue, or -1
+	 *         if no command was sent yet
+	 */
+	public synchronized long getLastCommandWait() {
+		return lastCommandWait;
+	}
+
+	/**
+	 * @return the average time in ms a command waited in the queue, or -1 if
+	 *         no command was sent yet
+	 */
+	public synchronized long getAverageCommandWait() {
+		return commandsSent == 0 ? -1 : totalCommandWait / commandsSent;
+	}
+
+	/**
+	 * @return the duty cycle in % last reported by the cube, or -1 if unknown
+	 */
+	public synchronized int getDutyCycle() {
+		return dutyCycle;
+	}
+
+	/**
+	 * @return the free memory slots last reported by the cube, or -1 if
+	 *         unknown
+	 */
+	public synchronized int getFreeMemorySlots() {
+		return freeMemorySlots;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("polls=").append(polls);
+		sb.append(", pollLatency=").append(lastPollLatency);
+		sb.append(", pollBytes=").append(lastPollBytes);
+		sb.append(", pollLines=").append(lastPollLines);
+		for (MessageType type : MessageType.values()) {
+			sb.append(", ").append(type).append('=').append(messages[type.ordinal()]);
+		}
+		sb.append(", parseFailures=").append(parseFailures);
+		sb.append(", reconnects=").append(reconnects);
+		sb.append(", requests=").append(requestCount).append('/').append(maxRequestsPerConnection);
+		sb.append(", queue=").append(commandQueueDepth);
+		sb.append(", commandWait=").append(lastCommandWait);
+		sb.append(", dutyCycle=").append(dutyCycle);
+		sb.append(", freeMemorySlots=").append(freeMemorySlots);
+		return sb.toString();
+	}
+}
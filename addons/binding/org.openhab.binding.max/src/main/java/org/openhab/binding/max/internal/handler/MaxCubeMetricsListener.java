@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import org.eclipse.smarthome.core.thing.ThingUID;
+
+/**
+ * The {@link MaxCubeMetricsListener} is notified when the metrics of a MAX!
+ * Cube bridge have been updated, after each state update and each command
+ * acknowledgement of the cube.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public interface MaxCubeMetricsListener {
+
+	/**
+	 * This method is called whenever the metrics of the bridge have been
+	 * updated. It is called from the connection thread and should return
+	 * quickly.
+	 *
+	 * @param bridge
+	 *            The MAX! Cube bridge the metrics belong to.
+	 * @param metrics
+	 *            The metrics of the bridge.
+	 */
+	public void onMetricsUpdated(ThingUID bridge, MaxCubeMetrics metrics);
+
+}
@@ -15,6 +15,8 @@ import static org.openhab.binding.max.MaxBinding.CHANNEL_MODE;
 import static org.openhab.binding.max.MaxBinding.CHANNEL_SETTEMP;
 import static org.openhab.binding.max.MaxBinding.CHANNEL_VALVE;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -30,6 +32,8 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.max.MaxBinding;
+import org.openhab.binding.max.internal.message.CommandResult;
+import org.openhab.binding.max.internal.message.CommandResultListener;
 import org.openhab.binding.max.internal.message.Device;
 import org.openhab.binding.max.internal.message.EcoSwitch;
 import org.openhab.binding.max.internal.message.HeatingThermostat;
@@ -47,13 +51,17 @@ import org.slf4j.LoggerFactory;
 public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusListener {
 
 	private Logger logger = LoggerFactory.getLogger(MaxDevicesHandler.class);
-	private int refresh = 60; // refresh every minute as default
-	ScheduledFuture<?> refreshJob;
+	/** retry interval in seconds while the bridge handler is not available */
+	private static final int BRIDGE_LOOKUP_INTERVAL = 10;
+	private ScheduledFuture<?> bridgeLookupJob;
 	private MaxCubeBridgeHandler bridgeHandler;
 
 	private String maxCubeDeviceSerial;
 	private boolean forceRefresh = true;
 
+	/** channel UIDs of this thing by channel id */
+	private final Map<String, ChannelUID> channelUIDs = new ConcurrentHashMap<String, ChannelUID>();
+
 	public MaxDevicesHandler(Thing thing) {
 		super(thing);
 	}
@@ -77,7 +85,7 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 		}
 		// until we get an update put the Thing offline
 		updateStatus(ThingStatus.OFFLINE);
-		deviceOnlineWatchdog();
+		lookupBridgeHandler();
 	}
 
 	/*
@@ -87,9 +95,9 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 	 */
 	@Override
 	public void dispose() {
-		if (refreshJob != null && !refreshJob.isCancelled()) {
-			refreshJob.cancel(true);
-			refreshJob = null;
+		if (bridgeLookupJob != null && !bridgeLookupJob.isCancelled()) {
+			bridgeLookupJob.cancel(true);
+			bridgeLookupJob = null;
 		}
 		updateStatus(ThingStatus.OFFLINE);
 		if (bridgeHandler != null)
@@ -101,33 +109,29 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 		super.dispose();
 	}
 
-	private void deviceOnlineWatchdog() {
+	/**
+	 * Registers this handler with the bridge handler. The bridge notifies the
+	 * handler when the device comes online or goes offline. As long as the
+	 * bridge handler is not available the lookup is retried.
+	 */
+	private void lookupBridgeHandler() {
 		Runnable runnable = new Runnable() {
+			@Override
 			public void run() {
 				try {
-					MaxCubeBridgeHandler bridgeHandler = getMaxCubeBridgeHandler();
-					if (bridgeHandler != null) {
-						if (bridgeHandler.getDevice(maxCubeDeviceSerial) == null) {
-							updateStatus(ThingStatus.OFFLINE);
-							bridgeHandler = null;
-						} else {
-							updateStatus(ThingStatus.ONLINE);
-						}
-
-					} else {
-						logger.debug("Bridge for maxcube device {} not found.", maxCubeDeviceSerial);
-						updateStatus(ThingStatus.OFFLINE);
-					}
-
+					lookupBridgeHandler();
 				} catch (Exception e) {
 					logger.debug("Exception occurred during execution: {}", e.getMessage(), e);
-					bridgeHandler = null;
 				}
-
 			}
 		};
 
-		refreshJob = scheduler.scheduleAtFixedRate(runnable, 0, refresh, TimeUnit.SECONDS);
+		if (getMaxCubeBridgeHandler() == null) {
+			logger.debug("Bridge for maxcube device {} not found.", maxCubeDeviceSerial);
+			bridgeLookupJob = scheduler.schedule(runnable, BRIDGE_LOOKUP_INTERVAL, TimeUnit.SECONDS);
+		} else {
+			bridgeLookupJob = null;
+		}
 	}
 
 	private synchronized MaxCubeBridgeHandler getMaxCubeBridgeHandler() {
@@ -142,6 +146,9 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 			if (handler instanceof MaxCubeBridgeHandler) {
 				this.bridgeHandler = (MaxCubeBridgeHandler) handler;
 				this.bridgeHandler.registerDeviceStatusListener(this);
+				// later changes are notified by the bridge
+				updateStatus(this.bridgeHandler.isDeviceOnline(maxCubeDeviceSerial) ? ThingStatus.ONLINE
+						: ThingStatus.OFFLINE);
 			} else {
 				logger.debug("No available bridge handler found for {} bridge {} .", maxCubeDeviceSerial,
 						bridge.getUID());
@@ -172,18 +179,65 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 		}
 
 		if (channelUID.getId().equals(CHANNEL_SETTEMP) || channelUID.getId().equals(CHANNEL_MODE)) {
-			SendCommand sendCommand = new SendCommand(maxCubeDeviceSerial, channelUID, command);
-			maxCubeBridge.queueCommand(sendCommand);
+			final SendCommand sendCommand = new SendCommand(maxCubeDeviceSerial, channelUID, command);
+			maxCubeBridge.queueCommand(sendCommand).addListener(new CommandResultListener() {
+				@Override
+				public void onCommandCompleted(CommandResult result) {
+					commandCompleted(sendCommand, result);
+				}
+			});
 		} else {
 			logger.warn("Setting of channel {} not possible. Read-only", channelUID);
 		}
 	}
 
+	/**
+	 * Restores the state of the channel of a command which did not reach the
+	 * device. The channel would otherwise keep showing the commanded value,
+	 * as the state of the device did not change.
+	 */
+	private void commandCompleted(final SendCommand sendCommand, CommandResult result) {
+		switch (result.getStatus()) {
+		case ACCEPTED:
+		case SUPERSEDED:
+			// the device state is updated by the next L message
+			return;
+		default:
+			break;
+		}
+		logger.info("Command {} for {} ({}) not executed by MAX! Cube: {}", sendCommand.getCommand(),
+				getThing().getUID(), sendCommand.getChannelUID().getId(), result);
+		// called while the bridge handler holds its lock
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				restoreChannelState(sendCommand.getChannelUID());
+			}
+		});
+	}
+
+	private void restoreChannelState(ChannelUID channelUID) {
+		MaxCubeBridgeHandler maxCubeBridge = getMaxCubeBridgeHandler();
+		if (maxCubeBridge == null) {
+			return;
+		}
+		Device device = maxCubeBridge.getDevice(maxCubeDeviceSerial);
+		if (!(device instanceof HeatingThermostat)) {
+			return;
+		}
+		HeatingThermostat thermostat = (HeatingThermostat) device;
+		if (channelUID.getId().equals(CHANNEL_SETTEMP)) {
+			updateState(channelUID, thermostat.getTemperatureSetpoint());
+		} else if (channelUID.getId().equals(CHANNEL_MODE)) {
+			updateState(channelUID, thermostat.getModeString());
+		}
+	}
+
 	@Override
 	public void onDeviceStateChanged(ThingUID bridge, Device device) {
 		if (device.getSerialNumber().equals(maxCubeDeviceSerial)) {
-			updateStatus(ThingStatus.ONLINE);
 			if (device.isUpdated() || forceRefresh) {
+				boolean refreshAll = forceRefresh;
 				forceRefresh = false;
 				logger.debug("Updating states of {} {} ({}) id: {}", device.getType(), device.getName(),
 						device.getSerialNumber(), getThing().getUID());
@@ -191,26 +245,36 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 				case WallMountedThermostat:
 				case HeatingThermostat:
 				case HeatingThermostatPlus:
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_SETTEMP),
-							(State) ((HeatingThermostat) device).getTemperatureSetpoint());
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_ACTUALTEMP),
-							(State) ((HeatingThermostat) device).getTemperatureActual());
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_MODE),
-							(State) ((HeatingThermostat) device).getModeString());
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-							(State) ((HeatingThermostat) device).getBatteryLow());
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_VALVE),
-							(State) ((HeatingThermostat) device).getValvePosition());
+					HeatingThermostat thermostat = (HeatingThermostat) device;
+					if (refreshAll || device.isChanged(CHANNEL_SETTEMP)) {
+						updateState(getChannelUID(CHANNEL_SETTEMP), thermostat.getTemperatureSetpoint());
+					}
+					if (refreshAll || device.isChanged(CHANNEL_ACTUALTEMP)) {
+						updateState(getChannelUID(CHANNEL_ACTUALTEMP), thermostat.getTemperatureActual());
+					}
+					if (refreshAll || device.isChanged(CHANNEL_MODE)) {
+						updateState(getChannelUID(CHANNEL_MODE), thermostat.getModeString());
+					}
+					if (refreshAll || device.isChanged(CHANNEL_BATTERY)) {
+						updateState(getChannelUID(CHANNEL_BATTERY), thermostat.getBatteryLow());
+					}
+					if (refreshAll || device.isChanged(CHANNEL_VALVE)) {
+						updateState(getChannelUID(CHANNEL_VALVE), thermostat.getValvePosition());
+					}
 					break;
 				case ShutterContact:
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_CONTACT_STATE),
-							(State) ((ShutterContact) device).getShutterState());
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-							(State) ((ShutterContact) device).getBatteryLow());
+					if (refreshAll || device.isChanged(CHANNEL_CONTACT_STATE)) {
+						updateState(getChannelUID(CHANNEL_CONTACT_STATE),
+								(State) ((ShutterContact) device).getShutterState());
+					}
+					if (refreshAll || device.isChanged(CHANNEL_BATTERY)) {
+						updateState(getChannelUID(CHANNEL_BATTERY), device.getBatteryLow());
+					}
 					break;
 				case EcoSwitch:
-					updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-							(State) ((EcoSwitch) device).getBatteryLow());
+					if (refreshAll || device.isChanged(CHANNEL_BATTERY)) {
+						updateState(getChannelUID(CHANNEL_BATTERY), ((EcoSwitch) device).getBatteryLow());
+					}
 					break;
 				default:
 					logger.debug("Unhandled Device {}.", device.getType());
@@ -223,6 +287,18 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 		}
 	}
 
+	/**
+	 * Returns the cached {@link ChannelUID} of a channel of this thing.
+	 */
+	private ChannelUID getChannelUID(String channelId) {
+		ChannelUID channelUID = channelUIDs.get(channelId);
+		if (channelUID == null) {
+			channelUID = new ChannelUID(getThing().getUID(), channelId);
+			channelUIDs.put(channelId, channelUID);
+		}
+		return channelUID;
+	}
+
 	@Override
 	public void onDeviceRemoved(MaxCubeBridgeHandler bridge, Device device) {
 		if (device.getSerialNumber().equals(maxCubeDeviceSerial)) {
@@ -233,6 +309,14 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 		}
 	}
 
+	@Override
+	public void onDeviceStatusChanged(ThingUID bridge, String serialNumber, ThingStatus status) {
+		if (serialNumber.equals(maxCubeDeviceSerial) && getThing().getStatus() != status) {
+			logger.debug("Device {} ({}) is {}.", getThing().getUID(), serialNumber, status);
+			updateStatus(status);
+		}
+	}
+
 	@Override
 	public void onDeviceAdded(Bridge bridge, Device device) {
 		forceRefresh = true;
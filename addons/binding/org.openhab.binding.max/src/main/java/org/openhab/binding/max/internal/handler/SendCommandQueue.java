@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.max.internal.message.SendCommand;
+
+/**
+ * The {@link SendCommandQueue} holds the commands waiting to be sent to the
+ * MAX! Cube. It keeps only the newest command per {@link SendCommand#getKey()}
+ * (device serial and channel). A newer command replaces the queued one but
+ * keeps its position, so commands are sent in the order in which their keys
+ * were first queued.
+ *
+ * @author agent - Initial contribution
+ */
+public final class SendCommandQueue {
+
+	private final int capacity;
+	private final LinkedHashMap<String, SendCommand> commands = new LinkedHashMap<String, SendCommand>();
+
+	private long mergedCount = 0;
+	private long droppedCount = 0;
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param capacity
+	 *            the maximum number of distinct keys in the queue
+	 */
+	public SendCommandQueue(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Adds a command to the queue, replacing a queued command with the same
+	 * key.
+	 *
+	 * @param sendCommand
+	 *            the command to be queued
+	 * @return the replaced command, the given command if it was dropped
+	 *         because the queue is full, or null if it was added
+	 */
+	public synchronized SendCommand offer(SendCommand sendCommand) {
+		SendCommand replaced = commands.get(sendCommand.getKey());
+		if (replaced != null) {
+			commands.put(sendCommand.getKey(), sendCommand);
+			mergedCount++;
+			return replaced;
+		}
+		if (commands.size() >= capacity) {
+			droppedCount++;
+			return sendCommand;
+		}
+		commands.put(sendCommand.getKey(), sendCommand);
+		return null;
+	}
+
+	/**
+	 * Removes and returns the oldest queued command.
+	 *
+	 * @return the command or null if the queue is empty
+	 */
+	public synchronized SendCommand poll() {
+		Iterator<Map.Entry<String, SendCommand>> iterator = commands.entrySet().iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		SendCommand sendCommand = iterator.next().getValue();
+		iterator.remove();
+		return sendCommand;
+	}
+
+	/**
+	 * @return the queued commands in the order they will be sent
+	 */
+	public synchronized List<SendCommand> getCommands() {
+		return new ArrayList<SendCommand>(commands.values());
+	}
+
+	/**
+	 * Removes a queued command.
+	 *
+	 * @param sendCommand
+	 *            the command to be removed
+	 * @return true if the command was queued
+	 */
+	public synchronized boolean remove(SendCommand sendCommand) {
+		if (commands.get(sendCommand.getKey()) != sendCommand) {
+			return false;
+		}
+		commands.remove(sendCommand.getKey());
+		return true;
+	}
+
+	public synchronized int size() {
+		return commands.size();
+	}
+
+	public synchronized boolean isEmpty() {
+		return commands.isEmpty();
+	}
+
+	public synchronized void clear() {
+		commands.clear();
+	}
+
+	/**
+	 * @return the number of commands replaced by a newer command for the same
+	 *         key
+	 */
+	public synchronized long getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * @return the number of commands dropped because the queue was full
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+}
@@ -159,19 +159,23 @@ public final class C_Message extends Message {
 				properties.put("ValveMaximum",valveMaximum);
 				properties.put("ValveOffset",valveOffset);
 			}
-			programData = "";
-			int ln = 13 * 6; //first day = Sat 
-			String startTime = "00:00h";
-			for (int char_idx = plusDataStart + programDataStart; char_idx < (plusDataStart + programDataStart +  26*7); char_idx++) {
-				if (ln % 13 == 0 ) { programData += "\r\n Day " + Integer.toString((ln / 13) % 7 ) + ": "; startTime = "00:00h"; }
-				int progTime =  (bytes[char_idx+1]&0xFF ) * 5 + (bytes[char_idx]&0x01 ) * 1280 ;
-				int progMinutes = progTime % 60;
-				int progHours = (progTime - progMinutes ) / 60;
-				String endTime = Integer.toString(progHours) + ":" + String.format("%02d", progMinutes) + "h";
-				programData += startTime + "-" + endTime + " " + Double.toString(bytes[char_idx] /4) + "C  ";
-				startTime = endTime;
-				char_idx++;
-				ln++;
+			// the program data is only logged, skip formatting it otherwise
+			if (logger.isTraceEnabled()) {
+				StringBuilder program = new StringBuilder();
+				int ln = 13 * 6; //first day = Sat 
+				String startTime = "00:00h";
+				for (int char_idx = plusDataStart + programDataStart; char_idx < (plusDataStart + programDataStart +  26*7); char_idx++) {
+					if (ln % 13 == 0 ) { program.append("\r\n Day ").append((ln / 13) % 7 ).append(": "); startTime = "00:00h"; }
+					int progTime =  (bytes[char_idx+1]&0xFF ) * 5 + (bytes[char_idx]&0x01 ) * 1280 ;
+					int progMinutes = progTime % 60;
+					int progHours = (progTime - progMinutes ) / 60;
+					String endTime = Integer.toString(progHours) + ":" + String.format("%02d", progMinutes) + "h";
+					program.append(startTime).append("-").append(endTime).append(" ").append(Double.toString(bytes[char_idx] /4)).append("C  ");
+					startTime = endTime;
+					char_idx++;
+					ln++;
+				}
+				programData = program.toString();
 			}
 
 
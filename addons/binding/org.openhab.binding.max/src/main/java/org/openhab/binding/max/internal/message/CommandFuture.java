@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CommandFuture} is the completion handle of a {@link SendCommand}.
+ * It completes once the cube acknowledged the command with an S message, or
+ * when the command failed, timed out or was removed from the queue.
+ *
+ * @author agent - Initial contribution
+ */
+public final class CommandFuture implements Future<CommandResult> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommandFuture.class);
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile CommandResult result;
+	private volatile boolean cancelled = false;
+	private List<CommandResultListener> listeners = new ArrayList<CommandResultListener>();
+
+	/**
+	 * Completes the future, unless it is completed already.
+	 *
+	 * @param result
+	 *            the result of the command
+	 * @return true if the future has been completed by this call
+	 */
+	public boolean complete(CommandResult result) {
+		List<CommandResultListener> completed;
+		synchronized (this) {
+			if (this.result != null || cancelled) {
+				return false;
+			}
+			this.result = result;
+			completed = listeners;
+			listeners = null;
+		}
+		done.countDown();
+		for (CommandResultListener listener : completed) {
+			notifyListener(listener, result);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a listener which is notified when the command is completed. If the
+	 * command is completed already, the listener is notified right away. The
+	 * listener is not notified if the command is cancelled.
+	 *
+	 * @param listener
+	 *            the listener
+	 */
+	public void addListener(CommandResultListener listener) {
+		CommandResult completed;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			if (result == null) {
+				listeners.add(listener);
+				return;
+			}
+			completed = result;
+		}
+		notifyListener(listener, completed);
+	}
+
+	/**
+	 * Notifies a listener, an exception thrown by the listener does not keep
+	 * the other listeners or commands from being completed.
+	 */
+	private static void notifyListener(CommandResultListener listener, CommandResult result) {
+		try {
+			listener.onCommandCompleted(result);
+		} catch (Exception e) {
+			logger.error("An exception occurred while calling the CommandResultListener", e);
+		}
+	}
+
+	/**
+	 * Cancels the command if it has not been sent yet. A cancelled command is
+	 * skipped when it is taken from the queue.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (result != null || cancelled) {
+				return false;
+			}
+			cancelled = true;
+			listeners = null;
+		}
+		done.countDown();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public CommandResult get() throws InterruptedException {
+		done.await();
+		return getResult();
+	}
+
+	@Override
+	public CommandResult get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("No result for command within " + unit.toMillis(timeout) + " ms");
+		}
+		return getResult();
+	}
+
+	private CommandResult getResult() {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+/**
+ * The {@link CommandResult} describes the outcome of a {@link SendCommand}.
+ *
+ * @author agent - Initial contribution
+ */
+public final class CommandResult {
+
+	/**
+	 * The outcome of a command.
+	 */
+	public enum Status {
+		/** the cube accepted the command */
+		ACCEPTED,
+		/** the cube discarded the command, usually because of its duty cycle */
+		DISCARDED,
+		/** the cube did not acknowledge the command in time */
+		TIMEOUT,
+		/** the command could not be sent */
+		FAILED,
+		/** the command was dropped because the command queue was full */
+		DROPPED,
+		/** the command was replaced by a newer command for the same channel */
+		SUPERSEDED
+	}
+
+	private final Status status;
+	private final int dutyCycle;
+	private final int freeMemorySlots;
+
+	public CommandResult(Status status) {
+		this(status, -1, -1);
+	}
+
+	public CommandResult(Status status, int dutyCycle, int freeMemorySlots) {
+		this.status = status;
+		this.dutyCycle = dutyCycle;
+		this.freeMemorySlots = freeMemorySlots;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return true if the cube accepted the command
+	 */
+	public boolean isAccepted() {
+		return status == Status.ACCEPTED;
+	}
+
+	/**
+	 * @return the duty cycle reported with the acknowledgement or -1
+	 */
+	public int getDutyCycle() {
+		return dutyCycle;
+	}
+
+	/**
+	 * @return the free memory slots reported with the acknowledgement or -1
+	 */
+	public int getFreeMemorySlots() {
+		return freeMemorySlots;
+	}
+
+	@Override
+	public String toString() {
+		return status + " (duty cycle " + dutyCycle + ", free memory slots " + freeMemorySlots + ")";
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+/**
+ * The {@link CommandResultListener} is notified when a {@link SendCommand} is
+ * completed. It is called from the thread completing the command, usually
+ * while the bridge handler holds its lock, so it must not block.
+ *
+ * @author agent - Initial contribution
+ */
+public interface CommandResultListener {
+
+	/**
+	 * This method is called once the command is completed.
+	 *
+	 * @param result
+	 *            The result of the command.
+	 */
+	public void onCommandCompleted(CommandResult result);
+
+}
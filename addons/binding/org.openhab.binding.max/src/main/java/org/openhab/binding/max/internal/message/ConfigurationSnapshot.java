@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The {@link ConfigurationSnapshot} stores the room and device configurations
+ * of a MAX! Cube in a compact binary file. The snapshot is loaded when the
+ * bridge starts, so devices are known before the cube sent its configuration.
+ *
+ * @author agent - Initial contribution
+ */
+public final class ConfigurationSnapshot {
+
+	private static final int MAGIC = 0x4D415853; // "MAXS"
+	private static final int VERSION = 1;
+
+	/** most rooms and devices a cube can manage */
+	private static final int MAX_ENTRIES = 255;
+
+	private ConfigurationSnapshot() {
+	}
+
+	/**
+	 * Encodes the rooms and configurations of the registry.
+	 *
+	 * @param registry
+	 *            the registry holding the configurations
+	 * @return the encoded snapshot
+	 */
+	public static byte[] encode(DeviceRegistry registry) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			List<RoomInformation> rooms = registry.getRooms();
+			out.writeInt(rooms.size());
+			for (RoomInformation room : rooms) {
+				out.writeInt(room.getPosition());
+				out.writeUTF(nonNull(room.getName()));
+				out.writeUTF(nonNull(room.getRFAddress()));
+			}
+
+			Collection<DeviceConfiguration> configurations = registry.getConfigurations();
+			List<DeviceConfiguration> written = new ArrayList<DeviceConfiguration>(configurations);
+			// stable order, so unchanged configurations give the same snapshot
+			Collections.sort(written, new Comparator<DeviceConfiguration>() {
+				@Override
+				public int compare(DeviceConfiguration c1, DeviceConfiguration c2) {
+					return nonNull(c1.getSerialNumber()).compareTo(nonNull(c2.getSerialNumber()));
+				}
+			});
+			out.writeInt(written.size());
+			for (DeviceConfiguration configuration : written) {
+				out.writeInt(configuration.getDeviceType().getValue());
+				out.writeUTF(nonNull(configuration.getSerialNumber()));
+				out.writeUTF(nonNull(configuration.getRFAddress()));
+				out.writeUTF(nonNull(configuration.getName()));
+				out.writeInt(configuration.getRoomId());
+			}
+			out.flush();
+		} catch (IOException e) {
+			// cannot happen when writing to memory
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes an encoded snapshot to a file. The file is replaced atomically
+	 * where the file system supports it.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param snapshot
+	 *            the encoded snapshot
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(File file, byte[] snapshot) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Cannot create directory " + parent);
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(snapshot);
+		} finally {
+			out.close();
+		}
+		if (!temp.renameTo(file)) {
+			if (!file.delete() || !temp.renameTo(file)) {
+				throw new IOException("Cannot replace " + file);
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot file into the registry. The rooms and configurations
+	 * are only added if the whole file could be read.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param registry
+	 *            the registry to which the configurations are added
+	 * @return the number of configurations read
+	 * @throws IOException
+	 *             if the file cannot be read or is corrupt
+	 */
+	public static int read(File file, DeviceRegistry registry) throws IOException {
+		byte[] snapshot = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < snapshot.length) {
+				int count = in.read(snapshot, read, snapshot.length - read);
+				if (count < 0) {
+					throw new IOException("Unexpected end of " + file);
+				}
+				read += count;
+			}
+		} finally {
+			in.close();
+		}
+
+		try {
+			return decode(snapshot, registry);
+		} catch (IOException | RuntimeException e) {
+			throw new IOException("Corrupt snapshot " + file + ": " + e, e);
+		}
+	}
+
+	private static int decode(byte[] snapshot, DeviceRegistry registry) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(snapshot));
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			throw new IOException("unsupported format");
+		}
+
+		int roomCount = readCount(data);
+		List<RoomInformation> rooms = new ArrayList<RoomInformation>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			int position = data.readInt();
+			String name = data.readUTF();
+			String rfAddress = data.readUTF();
+			rooms.add(new RoomInformation(position, name, rfAddress));
+		}
+
+		int configurationCount = readCount(data);
+		List<DeviceConfiguration> configurations = new ArrayList<DeviceConfiguration>(configurationCount);
+		for (int i = 0; i < configurationCount; i++) {
+			DeviceType deviceType = DeviceType.create(data.readInt());
+			String serialNumber = data.readUTF();
+			String rfAddress = data.readUTF();
+			String name = data.readUTF();
+			int roomId = data.readInt();
+			DeviceConfiguration configuration = DeviceConfiguration
+					.create(new DeviceInformation(deviceType, serialNumber, rfAddress, name, roomId));
+			configuration.setRoomId(roomId);
+			configurations.add(configuration);
+		}
+
+		registry.setRooms(rooms);
+		for (DeviceConfiguration configuration : configurations) {
+			registry.putConfiguration(configuration);
+		}
+		return configurations.size();
+	}
+
+	private static int readCount(DataInputStream data) throws IOException {
+		int count = data.readInt();
+		if (count < 0 || count > MAX_ENTRIES) {
+			throw new IOException("invalid count " + count);
+		}
+		return count;
+	}
+
+	private static String nonNull(String value) {
+		return value == null ? "" : value;
+	}
+}
@@ -8,8 +8,12 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import static org.openhab.binding.max.MaxBinding.CHANNEL_BATTERY;
+
+import java.nio.ByteBuffer;
 import java.util.Date;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.OpenClosedType;
@@ -33,6 +37,9 @@ public abstract class Device {
 	private int roomId = -1;
 	private DeviceConfiguration config;
 
+	/** channels whose value changed with the last update */
+	private final Set<String> changedChannels = new HashSet<String>();
+	/** set if all channels are to be treated as changed */
 	private boolean updated;
 	private boolean batteryLow;
 
@@ -58,71 +65,137 @@ public abstract class Device {
 		return config.getName();	
 	}
 
-	private static Device create(String rfAddress, List<DeviceConfiguration> configurations) {
-		Device returnValue = null;
-		for (DeviceConfiguration c : configurations) {
-			if (c.getRFAddress().toUpperCase().equals(rfAddress.toUpperCase())) {
-				switch (c.getDeviceType()) {
-				case HeatingThermostatPlus:
-				case HeatingThermostat:
-					HeatingThermostat thermostat = new HeatingThermostat(c);
-					thermostat.setType(c.getDeviceType());
-					return thermostat;
-				case EcoSwitch:
-					return new EcoSwitch(c);
-				case ShutterContact:
-					return new ShutterContact(c);
-				case WallMountedThermostat:
-					return new WallMountedThermostat(c);
-				default:
-					return new UnsupportedDevice(c);
-				}
-			}
+	private static Device create(int rfAddress, DeviceRegistry registry) {
+		DeviceConfiguration c = registry.getConfiguration(rfAddress);
+		if (c == null) {
+			return null;
 		}
-		return returnValue;
+		return create(c);
 	}
 
-	public static Device create(byte[] raw, List<DeviceConfiguration> configurations) {
-		if (raw.length == 0) {
-			return null;
+	/**
+	 * Creates a device without state from its configuration.
+	 * 
+	 * @param c
+	 *            the configuration of the device
+	 * @return the device of the type specified in the configuration
+	 */
+	public static Device create(DeviceConfiguration c) {
+		switch (c.getDeviceType()) {
+		case HeatingThermostatPlus:
+		case HeatingThermostat:
+			HeatingThermostat thermostat = new HeatingThermostat(c);
+			thermostat.setType(c.getDeviceType());
+			return thermostat;
+		case EcoSwitch:
+			return new EcoSwitch(c);
+		case ShutterContact:
+			return new ShutterContact(c);
+		case WallMountedThermostat:
+			return new WallMountedThermostat(c);
+		default:
+			return new UnsupportedDevice(c);
 		}
+	}
+
+	/**
+	 * Returns the RF address encoded in the first three bytes of a device
+	 * token of the L message.
+	 */
+	public static int getRFAddress(byte[] raw) {
+		return ((raw[0] & 0xFF) << 16) | ((raw[1] & 0xFF) << 8) | (raw[2] & 0xFF);
+	}
+
+	/**
+	 * Returns the RF address encoded in the first three bytes of the device
+	 * token starting at the given offset.
+	 */
+	public static int getRFAddress(ByteBuffer raw, int offset) {
+		return ((raw.get(offset) & 0xFF) << 16) | ((raw.get(offset + 1) & 0xFF) << 8) | (raw.get(offset + 2) & 0xFF);
+	}
 
-		String rfAddress = Utils.toHex(raw[0] & 0xFF, raw[1] & 0xFF, raw[2] & 0xFF);
+	public static Device create(byte[] raw, DeviceRegistry registry) {
+		return create(ByteBuffer.wrap(raw), 0, raw.length, registry);
+	}
+
+	/**
+	 * Creates a device from the device token of an L message.
+	 * 
+	 * @param raw
+	 *            the buffer holding the token
+	 * @param offset
+	 *            the index of the first byte of the token
+	 * @param length
+	 *            the length of the token
+	 * @param registry
+	 *            the registry holding the device configurations
+	 * @return the device or null if it has no configuration
+	 */
+	public static Device create(ByteBuffer raw, int offset, int length, DeviceRegistry registry) {
+		if (length == 0) {
+			return null;
+		}
 
 		// Based on the RF address and the corresponding configuration,
 		// create the device based on the type specified in it's configuration
 
-		Device device = Device.create(rfAddress, configurations);
+		Device device = Device.create(getRFAddress(raw, offset), registry);
 		if (device == null) {
 			logger.warn("Can't create device from received message, returning NULL.");
 			return null;
 		}
-		
-		return Device.update(raw,configurations, device);
+
+		return Device.update(raw, offset, length, device);
+	}
+
+	public static Device update(byte[] raw, Device device) {
+		return update(ByteBuffer.wrap(raw), 0, raw.length, device);
 	}
-	
-	public static Device update(byte[] raw, List<DeviceConfiguration> configurations, Device device) {
+
+	/**
+	 * Updates the state of a device in place from the device token of an L
+	 * message, without copying the token.
+	 * 
+	 * @param raw
+	 *            the buffer holding the token
+	 * @param offset
+	 *            the index of the first byte of the token
+	 * @param length
+	 *            the length of the token
+	 * @param device
+	 *            the device to be updated
+	 * @return the updated device
+	 */
+	public static Device update(ByteBuffer raw, int offset, int length, Device device) {
 
 		String rfAddress = device.getRFAddress();
 
+		device.setUpdated(false);
+
 		// byte 4 is skipped
 
 		// multiple device information are encoded in those particular bytes
-		boolean[] bits1 = Utils.getBits(Utils.fromByte(raw[4]));
-		boolean[] bits2 = Utils.getBits(Utils.fromByte(raw[5]));
-
-		device.setInitialized(bits1[1]);
-		device.setAnswer(bits1[2]);
-		device.setError(bits1[3]);
-		device.setValid(bits1[4]);
-
-		device.setDstSettingActive(bits2[3]);
-		device.setGatewayKnown(bits2[4]);
-		device.setPanelLocked(bits2[5]);
-		device.setLinkStatusError(bits2[6]);
-		device.setBatteryLow(bits2[7]);
+		int flags1 = raw.get(offset + 4) & 0xFF;
+		int flags2 = raw.get(offset + 5) & 0xFF;
+
+		device.setInitialized((flags1 & 0x02) != 0);
+		device.setAnswer((flags1 & 0x04) != 0);
+		device.setError((flags1 & 0x08) != 0);
+		device.setValid((flags1 & 0x10) != 0);
+
+		device.setDstSettingActive((flags2 & 0x08) != 0);
+		device.setGatewayKnown((flags2 & 0x10) != 0);
+		device.setPanelLocked((flags2 & 0x20) != 0);
+		device.setLinkStatusError((flags2 & 0x40) != 0);
+		device.setBatteryLow((flags2 & 0x80) != 0);
+
+		if (logger.isTraceEnabled()) {
+			logger.trace("Device {} type {} L Message length: {} content: {}", rfAddress, device.getType().toString(),
+					length, getHex(raw, offset, length));
+		}
 
-		logger.trace ("Device {} type {} L Message length: {} content: {}", rfAddress,device.getType().toString(), raw.length,Utils.getHex(raw));
+		// lowest two bits of the second flag byte
+		int status = flags2 & 0x03;
 
 		// TODO move the device specific readings into the sub classes
 		switch (device.getType()) {
@@ -131,87 +204,98 @@ public abstract class Device {
 		case HeatingThermostatPlus:
 			HeatingThermostat heatingThermostat = (HeatingThermostat) device;
 			// "xxxx xx00 = automatic, xxxx xx01 = manual, xxxx xx10 = vacation, xxxx xx11 = boost":
-			if (bits2[1] == false && bits2[0] == false) {
+			switch (status) {
+			case 0:
 				heatingThermostat.setMode(ThermostatModeType.AUTOMATIC);
-			} else if (bits2[1] == false && bits2[0] == true) {
+				break;
+			case 1:
 				heatingThermostat.setMode(ThermostatModeType.MANUAL);
-			} else if (bits2[1] == true && bits2[0] == false) {
+				break;
+			case 2:
 				heatingThermostat.setMode(ThermostatModeType.VACATION);
-			} else if (bits2[1] == true && bits2[0] == true) {
+				break;
+			default:
 				heatingThermostat.setMode(ThermostatModeType.BOOST);
-			} else {
-				logger.debug ("Device {}: Unknown mode",rfAddress) ;
+				break;
 			}
 
-			heatingThermostat.setValvePosition(raw[6] & 0xFF);
-			heatingThermostat.setTemperatureSetpoint(raw[7] & 0x7F);
+			heatingThermostat.setValvePosition(raw.get(offset + 6) & 0xFF);
+			heatingThermostat.setTemperatureSetpoint(raw.get(offset + 7) & 0x7F);
 
 			// 9 2 858B Date until (05-09-2011) (see Encoding/Decoding
 			// date/time)
 			// B 1 2E Time until (23:00) (see Encoding/Decoding date/time)
-			String hexDate = Utils.toHex(raw[8] & 0xFF, raw[9] & 0xFF);
-			int dateValue = Utils.fromHex(hexDate);
-			int timeValue = raw[10] & 0xFF;
+			int dateValue = ((raw.get(offset + 8) & 0xFF) << 8) | (raw.get(offset + 9) & 0xFF);
+			int timeValue = raw.get(offset + 10) & 0xFF;
 			Date date = Utils.resolveDateTime(dateValue, timeValue);
 			heatingThermostat.setDateSetpoint(date);
 
 			int actualTemp = 0;
 			if (device.getType() == DeviceType.WallMountedThermostat) {
-				actualTemp = (raw[11] & 0xFF) + (raw[7] & 0x80) * 2 ;
-				
+				actualTemp = (raw.get(offset + 11) & 0xFF) + (raw.get(offset + 7) & 0x80) * 2;
+
 			} else {
-				if ( heatingThermostat.getMode() != ThermostatModeType.VACATION && 
-						heatingThermostat.getMode() != ThermostatModeType.BOOST){
-					actualTemp = (raw[8] & 0xFF ) * 256  + ( raw[9] & 0xFF );
-				} else{
-					logger.debug ("Device {}: No temperature reading in {} mode",rfAddress, heatingThermostat.getMode()) ;
+				if (heatingThermostat.getMode() != ThermostatModeType.VACATION
+						&& heatingThermostat.getMode() != ThermostatModeType.BOOST) {
+					actualTemp = dateValue;
+				} else {
+					logger.debug("Device {}: No temperature reading in {} mode", rfAddress, heatingThermostat.getMode());
 				}
 			}
-			logger.trace ("Device {}: Actual Temperature : {}",rfAddress,  (double)actualTemp / 10);
-			heatingThermostat.setTemperatureActual((double)actualTemp / 10);
+			logger.trace("Device {}: Actual Temperature : {}", rfAddress, (double) actualTemp / 10);
+			heatingThermostat.setTemperatureActual((double) actualTemp / 10);
 			break;
 		case EcoSwitch:
-			String eCoSwitchData = Utils.toHex(raw[3] & 0xFF, raw[4] & 0xFF, raw[5] & 0xFF);
-			logger.trace ("EcoSwitch Device {} status bytes : {}", rfAddress, eCoSwitchData);
+			if (logger.isTraceEnabled()) {
+				logger.trace("EcoSwitch Device {} status bytes : {}", rfAddress, getHex(raw, offset + 3, 3));
+			}
 			EcoSwitch ecoswitch = (EcoSwitch) device;
 			// xxxx xx10 = shutter open, xxxx xx00 = shutter closed
-			if (bits2[1] == true && bits2[0] == false) {
+			if (status == 2) {
 				ecoswitch.setEcoMode(OnOffType.ON);
-				logger.trace ("Device {} status: ON", rfAddress);
-			} else if (bits2[1] == false && bits2[0] == false) {
+				logger.trace("Device {} status: ON", rfAddress);
+			} else if (status == 0) {
 				ecoswitch.setEcoMode(OnOffType.OFF);
-				logger.trace ("Device {} status: OFF", rfAddress);
+				logger.trace("Device {} status: OFF", rfAddress);
 			} else {
-				logger.trace ("Device {} status switch status Unknown (true-true)", rfAddress);
+				logger.trace("Device {} status switch status Unknown (true-true)", rfAddress);
 			}
 			break;
 		case ShutterContact:
 			ShutterContact shutterContact = (ShutterContact) device;
 			// xxxx xx10 = shutter open, xxxx xx00 = shutter closed
-			if (bits2[1] == true && bits2[0] == false) {
+			if (status == 2) {
 				shutterContact.setShutterState(OpenClosedType.OPEN);
-				logger.trace ("Device {} status: Open", rfAddress);
-			} else if (bits2[1] == false && bits2[0] == false) {
+				logger.trace("Device {} status: Open", rfAddress);
+			} else if (status == 0) {
 				shutterContact.setShutterState(OpenClosedType.CLOSED);
-				logger.trace ("Device {} status: Closed", rfAddress);
+				logger.trace("Device {} status: Closed", rfAddress);
 			} else {
-				logger.trace ("Device {} status switch status Unknown (true-true)", rfAddress);
+				logger.trace("Device {} status switch status Unknown (true-true)", rfAddress);
 			}
 
 			break;
 		default:
-			logger.debug("Unhandled Device. DataBytes: " + Utils.getHex(raw));
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unhandled Device. DataBytes: {}", getHex(raw, offset, length));
+			}
 			break;
 
 		}
 		return device;
 	}
 
+	private static String getHex(ByteBuffer raw, int offset, int length) {
+		byte[] token = new byte[length];
+		for (int i = 0; i < length; i++) {
+			token[i] = raw.get(offset + i);
+		}
+		return Utils.getHex(token);
+	}
+
 	private final void setBatteryLow(boolean batteryLow) {
-		if(this.batteryLow != batteryLow) {
-			this.updated = true;
-		}else {
-			this.updated = false;
+		if (this.batteryLow != batteryLow) {
+			setChanged(CHANNEL_BATTERY);
 		}
 		this.batteryLow = batteryLow;
 	}
@@ -277,12 +361,40 @@ public abstract class Device {
 		this.answer = answer;
 	}
 
+	/**
+	 * @return true if any channel value changed with the last update
+	 */
 	public boolean isUpdated() {
-		return updated;
+		return updated || !changedChannels.isEmpty();
 	}
 
+	/**
+	 * Marks all channels as changed or clears the changes.
+	 * 
+	 * @param updated
+	 *            true to treat all channels as changed, false to clear the
+	 *            changes
+	 */
 	public void setUpdated(boolean updated) {
 		this.updated = updated;
+		if (!updated) {
+			changedChannels.clear();
+		}
+	}
+
+	/**
+	 * Returns whether the value of a channel changed with the last update.
+	 * 
+	 * @param channelId
+	 *            the id of the channel
+	 * @return true if the channel is to be updated
+	 */
+	public boolean isChanged(String channelId) {
+		return updated || changedChannels.contains(channelId);
+	}
+
+	protected final void setChanged(String channelId) {
+		changedChannels.add(channelId);
 	}
 
 	public boolean isInitialized() {
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@link DeviceRegistry} holds the {@link Device}s and
+ * {@link DeviceConfiguration}s of a MAX! Cube, indexed by RF address and by
+ * serial number. RF addresses are kept as integers and serial numbers are
+ * normalised to upper case, so lookups do not need string conversions.
+ *
+ * @author agent - Initial contribution
+ */
+public final class DeviceRegistry {
+
+	private final Map<Integer, DeviceConfiguration> configurationsByRfAddress = new ConcurrentHashMap<Integer, DeviceConfiguration>();
+	private final Map<String, DeviceConfiguration> configurationsBySerial = new ConcurrentHashMap<String, DeviceConfiguration>();
+
+	private final Map<Integer, Device> devicesByRfAddress = new ConcurrentHashMap<Integer, Device>();
+	private final Map<String, Device> devicesBySerial = new ConcurrentHashMap<String, Device>();
+	private final List<Device> devices = new CopyOnWriteArrayList<Device>();
+
+	private volatile List<RoomInformation> rooms = Collections.emptyList();
+
+	/**
+	 * Returns the normalised form of a serial number used as index.
+	 *
+	 * @param serialNumber
+	 *            the serial number
+	 * @return the serial number in upper case without surrounding whitespace
+	 */
+	public static String normalizeSerial(String serialNumber) {
+		return serialNumber == null ? "" : serialNumber.trim().toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the integer value of a hexadecimal RF address.
+	 *
+	 * @param rfAddress
+	 *            the RF address as hexadecimal string
+	 * @return the RF address as integer or -1 if it cannot be parsed
+	 */
+	public static int toRfAddress(String rfAddress) {
+		try {
+			return Integer.parseInt(rfAddress.trim(), 16);
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Adds a configuration or replaces the configuration with the same serial
+	 * number.
+	 *
+	 * @param configuration
+	 *            the configuration to be indexed
+	 */
+	public synchronized void putConfiguration(DeviceConfiguration configuration) {
+		String serial = normalizeSerial(configuration.getSerialNumber());
+		DeviceConfiguration previous = configurationsBySerial.put(serial, configuration);
+		if (previous != null) {
+			configurationsByRfAddress.remove(toRfAddress(previous.getRFAddress()));
+		}
+		configurationsByRfAddress.put(toRfAddress(configuration.getRFAddress()), configuration);
+	}
+
+	public DeviceConfiguration getConfiguration(String serialNumber) {
+		return configurationsBySerial.get(normalizeSerial(serialNumber));
+	}
+
+	public DeviceConfiguration getConfiguration(int rfAddress) {
+		return configurationsByRfAddress.get(rfAddress);
+	}
+
+	public Collection<DeviceConfiguration> getConfigurations() {
+		return Collections.unmodifiableCollection(configurationsBySerial.values());
+	}
+
+	/**
+	 * Adds a device to the registry.
+	 *
+	 * @param device
+	 *            the device to be indexed
+	 */
+	public synchronized void addDevice(Device device) {
+		Device previous = devicesBySerial.put(normalizeSerial(device.getSerialNumber()), device);
+		if (previous != null) {
+			devices.remove(previous);
+			devicesByRfAddress.remove(toRfAddress(previous.getRFAddress()));
+		}
+		devicesByRfAddress.put(toRfAddress(device.getRFAddress()), device);
+		devices.add(device);
+	}
+
+	public Device getDevice(String serialNumber) {
+		return devicesBySerial.get(normalizeSerial(serialNumber));
+	}
+
+	public Device getDevice(int rfAddress) {
+		return devicesByRfAddress.get(rfAddress);
+	}
+
+	/**
+	 * @return the devices in the order they have been added
+	 */
+	public List<Device> getDevices() {
+		return Collections.unmodifiableList(devices);
+	}
+
+	/**
+	 * Removes the configurations and devices whose serial numbers are not in
+	 * the given collection.
+	 *
+	 * @param serialNumbers
+	 *            the serial numbers of the devices known by the cube
+	 */
+	public synchronized void retainConfigurations(Collection<String> serialNumbers) {
+		Set<String> retained = new HashSet<String>();
+		for (String serialNumber : serialNumbers) {
+			retained.add(normalizeSerial(serialNumber));
+		}
+		for (DeviceConfiguration configuration : configurationsBySerial.values()) {
+			String serial = normalizeSerial(configuration.getSerialNumber());
+			if (!retained.contains(serial)) {
+				configurationsBySerial.remove(serial);
+				configurationsByRfAddress.remove(toRfAddress(configuration.getRFAddress()));
+			}
+		}
+		for (Device device : devices) {
+			String serial = normalizeSerial(device.getSerialNumber());
+			if (!retained.contains(serial)) {
+				devicesBySerial.remove(serial);
+				devicesByRfAddress.remove(toRfAddress(device.getRFAddress()));
+				devices.remove(device);
+			}
+		}
+	}
+
+	public void setRooms(List<RoomInformation> rooms) {
+		this.rooms = Collections.unmodifiableList(new ArrayList<RoomInformation>(rooms));
+	}
+
+	/**
+	 * @return the rooms as defined by the last M message
+	 */
+	public List<RoomInformation> getRooms() {
+		return rooms;
+	}
+
+	public int size() {
+		return devices.size();
+	}
+}
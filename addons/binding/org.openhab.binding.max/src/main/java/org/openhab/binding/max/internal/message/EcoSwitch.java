@@ -8,6 +8,8 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import static org.openhab.binding.max.MaxBinding.CHANNEL_SWITCH_STATE;
+
 import org.eclipse.smarthome.core.library.types.OnOffType;
 
 /**
@@ -37,6 +39,7 @@ public class EcoSwitch extends ShutterContact {
 		return ecoMode;
 	}
 	public void setEcoMode(OnOffType ecoMode) {
+		if (this.ecoMode != ecoMode) setChanged(CHANNEL_SWITCH_STATE);
 		this.ecoMode = ecoMode;
 	}
 }
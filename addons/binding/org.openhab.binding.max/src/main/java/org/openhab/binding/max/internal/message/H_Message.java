@@ -88,6 +88,14 @@ public final class H_Message extends Message {
 		cal.set(year, month, date, hours, minutes, 0);
 	}
 	
+	public int getDutyCycle() {
+		return Integer.parseInt(rawDutyCycle);
+	}
+
+	public int getFreeMemorySlots() {
+		return Integer.parseInt(rawFreeMemorySlots);
+	}
+
 	@Override
 	public void debug(Logger logger) {
 		logger.trace("=== H_Message === ");
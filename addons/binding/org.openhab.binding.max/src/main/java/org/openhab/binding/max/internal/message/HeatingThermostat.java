@@ -8,6 +8,11 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import static org.openhab.binding.max.MaxBinding.CHANNEL_ACTUALTEMP;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_MODE;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_SETTEMP;
+import static org.openhab.binding.max.MaxBinding.CHANNEL_VALVE;
+
 import java.util.Date;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
@@ -72,7 +77,7 @@ public class HeatingThermostat extends Device {
 	}
 
 	void setMode(ThermostatModeType mode) {
-		if(this.mode != mode) setUpdated (true);
+		if(this.mode != mode) setChanged(CHANNEL_MODE);
 		this.mode = mode;
 	}
 
@@ -81,7 +86,7 @@ public class HeatingThermostat extends Device {
 	 * @param valvePosition the valve position as provided by the L message
 	 */
 	public void setValvePosition(int valvePosition) {
-		if(	this.valvePosition != valvePosition) setUpdated (true);
+		if(	this.valvePosition != valvePosition) setChanged(CHANNEL_VALVE);
 		this.valvePosition = valvePosition;
 	}
 
@@ -108,7 +113,7 @@ public class HeatingThermostat extends Device {
 	 * @param value the actual temperature raw value as provided by the L message
 	 */
 	public void setTemperatureActual(double value) {
-		if(this.temperatureActual != value ) setUpdated (true);
+		if(this.temperatureActual != value ) setChanged(CHANNEL_ACTUALTEMP);
 		this.temperatureActual = value ;
 	}
 
@@ -128,7 +133,7 @@ public class HeatingThermostat extends Device {
 	 * @param value the setpoint temperature raw value as provided by the L message
 	 */
 	public void setTemperatureSetpoint(int value) {
-		if(Math.abs(this.temperatureSetpoint - (value / 2.0)) > 0.1 ) setUpdated (true);
+		if(Math.abs(this.temperatureSetpoint - (value / 2.0)) > 0.1 ) setChanged(CHANNEL_SETTEMP);
 		this.temperatureSetpoint = value / 2.0;
 	}
 
@@ -8,14 +8,15 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import org.openhab.binding.max.internal.Utils;
 import org.openhab.binding.max.internal.message.MaxTokenizer;
 import org.apache.commons.net.util.Base64;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -28,11 +29,15 @@ import org.slf4j.Logger;
  */
 public final class L_Message extends Message {
 
+	private static final Logger logger = LoggerFactory.getLogger(L_Message.class);
+
+	private static final int PAYLOAD_OFFSET = 2;
+
 	public L_Message(String raw) {
 		super(raw);
 	}
 
-	public Collection<? extends Device> getDevices(List<DeviceConfiguration> configurations) {
+	public Collection<? extends Device> getDevices(DeviceRegistry registry) {
 
 		List<Device> devices = new ArrayList<Device>();
 
@@ -42,7 +47,7 @@ public final class L_Message extends Message {
 
 		while (tokenizer.hasMoreElements()) {
 			byte[] token = tokenizer.nextElement();
-			Device tempDevice = Device.create(token, configurations);
+			Device tempDevice = Device.create(token, registry);
 			if (tempDevice != null) {
 				devices.add(tempDevice);
 			}
@@ -51,38 +56,81 @@ public final class L_Message extends Message {
 		return devices;
 	}
 	
-	public Collection<? extends Device> updateDevices(List<Device> devices, List<DeviceConfiguration> configurations) {
-
-		byte[] decodedRawMessage = Base64.decodeBase64(getPayload().getBytes());
+	/**
+	 * Updates the devices of the registry with the states of this message.
+	 * Devices not yet known are created from their configuration and added to
+	 * the registry.
+	 * 
+	 * @param registry
+	 *            the registry holding the devices and configurations
+	 * @return the devices of the registry
+	 */
+	public Collection<? extends Device> updateDevices(DeviceRegistry registry) {
+		return updateDevices(registry, new MaxMessageDecoder());
+	}
 
-		MaxTokenizer tokenizer = new MaxTokenizer(decodedRawMessage);
+	/**
+	 * Updates the devices of the registry with the states of this message.
+	 * The payload is decoded into the buffer of the given decoder and the
+	 * device tokens are read in place, so no arrays are allocated for devices
+	 * already known.
+	 * 
+	 * @param registry
+	 *            the registry holding the devices and configurations
+	 * @param decoder
+	 *            the decoder used to decode the payload
+	 * @return the devices of the registry
+	 */
+	public Collection<? extends Device> updateDevices(DeviceRegistry registry, MaxMessageDecoder decoder) {
+		return updateDevices(registry, decoder, null);
+	}
 
-		while (tokenizer.hasMoreElements()) {
-			byte[] token = tokenizer.nextElement();
-			String rfAddress = Utils.toHex(token[0] & 0xFF, token[1] & 0xFF, token[2] & 0xFF);
-			//logger.debug("token: "+token+" rfaddress: "+rfAddress);
-			
-			Device foundDevice = null;
-			for (Device device : devices) {
-				//logger.debug(device.getRFAddress().toUpperCase()+ " vs "+rfAddress);
-				if (device.getRFAddress().toUpperCase().equals(rfAddress)) {
-					//logger.debug("Updating device..."+rfAddress);
-					foundDevice = device;
-				}
+	/**
+	 * Updates the devices of the registry with the states of this message and
+	 * collects the devices contained in the message.
+	 * 
+	 * @param registry
+	 *            the registry holding the devices and configurations
+	 * @param decoder
+	 *            the decoder used to decode the payload
+	 * @param received
+	 *            receives the devices contained in this message, may be null
+	 * @return the devices of the registry
+	 */
+	public Collection<? extends Device> updateDevices(DeviceRegistry registry, MaxMessageDecoder decoder,
+			Collection<Device> received) {
+
+		ByteBuffer data = decoder.decodeBase64(getRaw(), PAYLOAD_OFFSET);
+		int end = data.limit();
+		int offset = 0;
+
+		// every token starts with its length, followed by the RF address
+		while (offset < end) {
+			int length = data.get(offset) & 0xFF;
+			int start = offset + 1;
+			offset = start + length;
+			if (offset > end) {
+				logger.debug("Truncated device data in L message");
+				break;
 			}
-			if(foundDevice!= null) {
-				foundDevice = Device.update(token, configurations, foundDevice);
-				//devices.remove(token);
-				//devices.add(foundDevice);
-			}else{
-				Device tempDevice = Device.create(token, configurations);
-				if (tempDevice != null) {
-					devices.add(tempDevice);
+			if (length < 3) {
+				continue;
+			}
+			Device foundDevice = registry.getDevice(Device.getRFAddress(data, start));
+			if (foundDevice != null) {
+				Device.update(data, start, length, foundDevice);
+			} else {
+				foundDevice = Device.create(data, start, length, registry);
+				if (foundDevice != null) {
+					registry.addDevice(foundDevice);
 				}
 			}
+			if (foundDevice != null && received != null) {
+				received.add(foundDevice);
+			}
 		}
 
-		return devices;
+		return registry.getDevices();
 	}
 	
 	@Override
@@ -8,6 +8,7 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
 import org.apache.commons.net.util.Base64;
@@ -25,6 +26,9 @@ import org.slf4j.LoggerFactory;
  */
 public final class M_Message extends Message {
 
+	/** names and serial numbers are encoded with one byte per character */
+	private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
 	public ArrayList<RoomInformation> rooms;
 	public ArrayList<DeviceInformation> devices;
 	private Boolean hasConfiguration ;
@@ -50,7 +54,7 @@ public final class M_Message extends Message {
 			rooms = new ArrayList<RoomInformation>();
 			devices = new ArrayList<DeviceInformation>();
 
-			int roomCount = bytes[2];
+			int roomCount = bytes[2] & 0xff;
 
 			int byteOffset = 3; // start of rooms
 
@@ -59,12 +63,9 @@ public final class M_Message extends Message {
 			for (int i = 0; i < roomCount; i++) {
 
 				int position = bytes[byteOffset++];
-				String name = "";
-
 				int nameLength = (int) bytes[byteOffset++] & 0xff; 
-				for (int char_idx = 0; char_idx < nameLength; char_idx++) {
-					name += (char) bytes[byteOffset++];
-				}
+				String name = new String(bytes, byteOffset, nameLength, CHARSET);
+				byteOffset += nameLength;
 
 				String rfAddress = Utils.toHex(((int)bytes[byteOffset] & 0xff), ((int)bytes[byteOffset+1] & 0xff), ((int)bytes[byteOffset + 2] & 0xff));
 				byteOffset += 3;
@@ -74,7 +75,7 @@ public final class M_Message extends Message {
 
 			/* process devices */
 
-			int deviceCount = bytes[byteOffset++];
+			int deviceCount = bytes[byteOffset++] & 0xff;
 
 			for (int deviceId = 0; deviceId < deviceCount; deviceId++) {
 				DeviceType deviceType = DeviceType.create(bytes[byteOffset++]);
@@ -82,19 +83,13 @@ public final class M_Message extends Message {
 				String rfAddress = Utils.toHex(((int)bytes[byteOffset]&0xff), ((int)bytes[byteOffset+1]&0xff), ((int)bytes[byteOffset+2]&0xff));
 				byteOffset += 3;
 
-				String serialNumber = "";
-
-				for (int i = 0; i < 10; i++) {
-					serialNumber += (char) bytes[byteOffset++];
-				}
+				String serialNumber = new String(bytes, byteOffset, 10, CHARSET);
+				byteOffset += 10;
 
 				int nameLength = (int)bytes[byteOffset++] & 0xff;
 
-				String deviceName = "";
-
-				for (int char_idx = 0;	 char_idx < nameLength; char_idx++) {
-					deviceName += (char)bytes[byteOffset++];
-				}
+				String deviceName = new String(bytes, byteOffset, nameLength, CHARSET);
+				byteOffset += nameLength;
 
 				int roomId = (int)bytes[byteOffset++] & 0xff;
 				devices.add(new DeviceInformation(deviceType, serialNumber, rfAddress, deviceName, roomId));	
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The {@link MaxMessageDecoder} decodes the Base64 encoded payload of MAX!Cube
+ * messages into a buffer which is reused for every message. This avoids
+ * allocating new arrays for every received message. An instance must not be
+ * shared between threads.
+ *
+ * @author agent - Initial contribution
+ */
+public final class MaxMessageDecoder {
+
+	private static final int INITIAL_SIZE = 1024;
+
+	private static final byte[] BASE64_VALUES = new byte[128];
+
+	static {
+		Arrays.fill(BASE64_VALUES, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private byte[] data = new byte[INITIAL_SIZE];
+	private ByteBuffer buffer = ByteBuffer.wrap(data);
+
+	/**
+	 * Decodes the Base64 encoded characters of the given string into the
+	 * reusable buffer. Decoding stops at the end of the string, at the first
+	 * padding character or at the given delimiter. Characters outside the
+	 * Base64 alphabet are skipped.
+	 *
+	 * @param raw
+	 *            the string holding the encoded data
+	 * @param offset
+	 *            the index of the first encoded character
+	 * @param delimiter
+	 *            the character ending the encoded data
+	 * @return the buffer holding the decoded bytes between position 0 and its
+	 *         limit. It is only valid until the next call.
+	 */
+	public ByteBuffer decodeBase64(String raw, int offset, char delimiter) {
+		int end = raw.length();
+		ensureCapacity(((end - offset) * 3) / 4 + 3);
+
+		int bits = 0;
+		int bitCount = 0;
+		int length = 0;
+		for (int i = offset; i < end; i++) {
+			char c = raw.charAt(i);
+			if (c == '=' || c == delimiter) {
+				break;
+			}
+			if (c >= BASE64_VALUES.length || BASE64_VALUES[c] < 0) {
+				continue;
+			}
+			bits = (bits << 6) | BASE64_VALUES[c];
+			bitCount += 6;
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				data[length++] = (byte) (bits >> bitCount);
+				bits &= (1 << bitCount) - 1;
+			}
+		}
+
+		buffer.clear();
+		buffer.limit(length);
+		return buffer;
+	}
+
+	/**
+	 * Decodes the Base64 encoded characters of the given string into the
+	 * reusable buffer.
+	 *
+	 * @see #decodeBase64(String, int, char)
+	 */
+	public ByteBuffer decodeBase64(String raw, int offset) {
+		return decodeBase64(raw, offset, '=');
+	}
+
+	private void ensureCapacity(int size) {
+		if (data.length < size) {
+			data = new byte[Math.max(size, data.length * 2)];
+			buffer = ByteBuffer.wrap(data);
+		}
+	}
+}
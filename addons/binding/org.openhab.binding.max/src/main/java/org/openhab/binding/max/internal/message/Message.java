@@ -29,6 +29,13 @@ public abstract class Message {
 	public abstract void debug(Logger logger);
 	public abstract MessageType getType();
 	
+	/**
+	 * @return the received line including the message type prefix
+	 */
+	protected final String getRaw() {
+		return raw;
+	}
+
 	protected final String getPayload() {
 		return raw.substring(2, raw.length());
 	}
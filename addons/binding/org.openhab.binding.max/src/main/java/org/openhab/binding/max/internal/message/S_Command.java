@@ -20,6 +20,8 @@ import org.openhab.binding.max.internal.Utils;
  */
 public class S_Command {
 
+	// the 0x04 flag in the second byte addresses the room (group) of the
+	// device, the cube applies the command to all thermostats of the room
 	private String baseString = "000440000000";
 	private boolean[] bits = null;
 
@@ -52,7 +54,7 @@ public class S_Command {
 		// AB => bit mapping
 		// 01 = Permanent
 		// 10 = Temporarily
-		if ( mode.equals(ThermostatModeType.MANUAL)){
+		if ( ThermostatModeType.MANUAL.equals(mode)){
 			bits[7] = false;  // A (MSB)
 			bits[6] = true;   // B
 		} else
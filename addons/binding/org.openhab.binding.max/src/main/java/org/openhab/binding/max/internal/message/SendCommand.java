@@ -28,6 +28,9 @@ public final class SendCommand {
 	private String serialNumber;
 	private String key;
 
+	private final CommandFuture future = new CommandFuture();
+	private final long queuedTime = System.currentTimeMillis();
+
 
 	public SendCommand(String serialNumber,ChannelUID channelUID,Command command) {
 		commandId +=1;
@@ -55,6 +58,20 @@ public final class SendCommand {
 	}
 
 
+	/**
+	 * @return the completion handle of this command
+	 */
+	public CommandFuture getFuture() {
+		return future;
+	}
+
+	/**
+	 * @return the time the command was created in ms
+	 */
+	public long getQueuedTime() {
+		return queuedTime;
+	}
+
 	/**
 	 * @return the id
 	 */
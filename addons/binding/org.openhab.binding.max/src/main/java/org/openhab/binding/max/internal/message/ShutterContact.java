@@ -8,6 +8,8 @@
  */
 package org.openhab.binding.max.internal.message;
 
+import static org.openhab.binding.max.MaxBinding.CHANNEL_CONTACT_STATE;
+
 import org.eclipse.smarthome.core.library.types.OpenClosedType;
 
 /**
@@ -26,7 +28,7 @@ public class ShutterContact extends Device {
 	}
 
 	public void setShutterState(OpenClosedType shutterState) {
-		if(this.shutterState != shutterState ) setUpdated (true);
+		if(this.shutterState != shutterState ) setChanged(CHANNEL_CONTACT_STATE);
 		this.shutterState = shutterState;
 	}
 
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * The {@link SonosPayloads} provides documents as sent by the Zone Players:
+ * LastChange events, a ZoneGroupState of 14 players in 9 groups, track
+ * metadata and a page of a ContentDirectory browse.
+ *
+ * @author agent - Initial contribution
+ */
+final class SonosPayloads {
+
+	static final String AV_TRANSPORT_LAST_CHANGE = "avtransport-lastchange.xml";
+	static final String RENDERING_CONTROL_LAST_CHANGE = "renderingcontrol-lastchange.xml";
+	static final String ZONE_GROUP_STATE = "zonegroupstate.xml";
+	static final String TRACK_METADATA = "track-metadata.xml";
+
+	/** number of entries of a browse page, as requested by the binding */
+	static final int BROWSE_PAGE_SIZE = 200;
+
+	private SonosPayloads() {
+	}
+
+	/**
+	 * @param name
+	 *            the name of the payload
+	 * @return the payload
+	 */
+	static String load(String name) {
+		InputStream in = SonosPayloads.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IllegalArgumentException("Unknown payload " + name);
+		}
+		try {
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			StringBuilder payload = new StringBuilder();
+			char[] buffer = new char[4096];
+			int length;
+			while ((length = reader.read(buffer)) != -1) {
+				payload.append(buffer, 0, length);
+			}
+			return payload.toString();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read payload " + name, e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * @return a page of saved playlists, as returned by a browse of SQ:
+	 */
+	static String browsePage() {
+		StringBuilder page = new StringBuilder();
+		page.append("<DIDL-Lite xmlns:dc=\"http://purl.org/dc/elements/1.1/\" "
+				+ "xmlns:upnp=\"urn:schemas-upnp-org:metadata-1-0/upnp/\" "
+				+ "xmlns:r=\"urn:schemas-rinconnetworks-com:metadata-1-0/\" "
+				+ "xmlns=\"urn:schemas-upnp-org:metadata-1-0/DIDL-Lite/\">");
+		for (int i = 0; i < BROWSE_PAGE_SIZE; i++) {
+			page.append("<container id=\"SQ:").append(i)
+					.append("\" parentID=\"SQ:\" restricted=\"true\">")
+					.append("<dc:title>Playlist ").append(i).append("</dc:title>")
+					.append("<res protocolInfo=\"file:*:audio/mpegurl:*\">")
+					.append("file:///jffs/settings/savedqueues.rsq#").append(i)
+					.append("</res>")
+					.append("<upnp:class>object.container.playlistContainer</upnp:class>")
+					.append("</container>");
+		}
+		page.append("</DIDL-Lite>");
+		return page.toString();
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.sonos.internal.SonosEntry;
+import org.openhab.binding.sonos.internal.SonosMetaData;
+import org.openhab.binding.sonos.internal.SonosXMLParser;
+import org.openhab.binding.sonos.internal.SonosZoneGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the {@link SonosXMLParser} entry points for the
+ * documents the binding receives most often. The contended benchmark runs on
+ * four threads, like events arriving for several Zone Players at once. Run
+ * with <code>-prof gc</code> to see the allocation rate.
+ *
+ * @author agent - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SonosXMLParserBenchmark {
+
+	private String avTransportLastChange;
+	private String renderingControlLastChange;
+	private String zoneGroupState;
+	private String trackMetaData;
+	private String browsePage;
+
+	@Setup
+	public void setUp() {
+		avTransportLastChange = SonosPayloads.load(SonosPayloads.AV_TRANSPORT_LAST_CHANGE);
+		renderingControlLastChange = SonosPayloads.load(SonosPayloads.RENDERING_CONTROL_LAST_CHANGE);
+		zoneGroupState = SonosPayloads.load(SonosPayloads.ZONE_GROUP_STATE);
+		trackMetaData = SonosPayloads.load(SonosPayloads.TRACK_METADATA);
+		browsePage = SonosPayloads.browsePage();
+	}
+
+	@Benchmark
+	public Map<String, String> parseAVTransportLastChange() {
+		return SonosXMLParser.getAVTransportFromXML(avTransportLastChange);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Map<String, String> parseAVTransportLastChangeContended() {
+		return SonosXMLParser.getAVTransportFromXML(avTransportLastChange);
+	}
+
+	@Benchmark
+	public Map<String, String> parseRenderingControlLastChange() {
+		return SonosXMLParser.getRenderingControlFromXML(renderingControlLastChange);
+	}
+
+	@Benchmark
+	public List<SonosZoneGroup> parseZoneGroupState() {
+		return SonosXMLParser.getZoneGroupFromXML(zoneGroupState);
+	}
+
+	@Benchmark
+	public SonosMetaData parseTrackMetaData() {
+		return SonosXMLParser.getMetaDataFromXML(trackMetaData);
+	}
+
+	@Benchmark
+	public List<SonosEntry> parseBrowsePage() {
+		return SonosXMLParser.getEntriesFromString(browsePage);
+	}
+}
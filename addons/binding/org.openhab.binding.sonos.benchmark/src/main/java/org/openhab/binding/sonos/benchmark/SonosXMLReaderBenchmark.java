@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.sonos.internal.SonosXMLReaderPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Compares parsing with a reader created by {@link XMLReaderFactory} for every
+ * document, as the parser used to do, with parsing with a reader of the
+ * {@link SonosXMLReaderPool}. Both use an empty handler, so only the cost of
+ * the reader is measured.
+ *
+ * @author agent - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SonosXMLReaderBenchmark {
+
+	@Param({ SonosPayloads.AV_TRANSPORT_LAST_CHANGE, SonosPayloads.RENDERING_CONTROL_LAST_CHANGE,
+			SonosPayloads.ZONE_GROUP_STATE, SonosPayloads.TRACK_METADATA })
+	public String payload;
+
+	private String xml;
+	private final DefaultHandler handler = new DefaultHandler();
+	private final SonosXMLReaderPool pool = new SonosXMLReaderPool();
+
+	@Setup
+	public void setUp() {
+		xml = SonosPayloads.load(payload);
+	}
+
+	@Benchmark
+	public void factoryReader() throws IOException, SAXException {
+		XMLReader reader = XMLReaderFactory.createXMLReader();
+		reader.setContentHandler(handler);
+		reader.parse(new InputSource(new StringReader(xml)));
+	}
+
+	@Benchmark
+	public void pooledReader() throws IOException, SAXException {
+		pool.parse(xml, handler);
+	}
+}
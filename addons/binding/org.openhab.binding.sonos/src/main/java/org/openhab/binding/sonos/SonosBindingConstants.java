@@ -33,6 +33,8 @@ public class SonosBindingConstants {
     public final static String CURRENTARTIST = "currentartist";
     public final static String CURRENTTITLE = "currenttitle";
     public final static String CURRENTTRACK = "currenttrack";
+    public final static String LASTCHANGECACHEHITS = "lastchangecachehits";
+    public final static String LASTCHANGEDUPLICATES = "lastchangeduplicates";
     public final static String LED = "led";
     public final static String LINEIN = "linein";
     public final static String LOCALCOORDINATOR = "localcoordinator";
@@ -15,6 +15,7 @@ public class ZonePlayerConfiguration {
 	public static final String IP_ADDRESS = "ipAddress";
 	public static final String MODEL = "model";
 	public static final String DEVICE = "device";
+	public static final String EVENT_FIRST = "eventFirst";
 
 	
 	public String udn;
@@ -22,5 +23,6 @@ public class ZonePlayerConfiguration {
 	public String ipAddress;
 	public String model;
 	public String device;
+	public Boolean eventFirst;
 	
 }
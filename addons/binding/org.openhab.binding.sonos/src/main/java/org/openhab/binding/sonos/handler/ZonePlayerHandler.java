@@ -21,6 +21,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.StringUtils;
@@ -45,6 +51,7 @@ import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.UnDefType;
 import org.eclipse.smarthome.io.net.http.HttpUtil;
@@ -52,11 +59,21 @@ import org.eclipse.smarthome.io.transport.upnp.UpnpIOParticipant;
 import org.eclipse.smarthome.io.transport.upnp.UpnpIOService;
 import org.openhab.binding.sonos.config.ZonePlayerConfiguration;
 import org.openhab.binding.sonos.internal.SonosAlarm;
+import org.openhab.binding.sonos.internal.SonosBindingContext;
+import org.openhab.binding.sonos.internal.SonosBrowseCache;
 import org.openhab.binding.sonos.internal.SonosEntry;
+import org.openhab.binding.sonos.internal.SonosEntryVisitor;
+import org.openhab.binding.sonos.internal.SonosLastChangeCache;
+import org.openhab.binding.sonos.internal.SonosLastChangeTracker;
 import org.openhab.binding.sonos.internal.SonosMetaData;
+import org.openhab.binding.sonos.internal.SonosPollingParticipant;
+import org.openhab.binding.sonos.internal.SonosPollingScheduler;
+import org.openhab.binding.sonos.internal.SonosStateStore;
 import org.openhab.binding.sonos.internal.SonosXMLParser;
 import org.openhab.binding.sonos.internal.SonosZoneGroup;
 import org.openhab.binding.sonos.internal.SonosZonePlayerState;
+import org.openhab.binding.sonos.internal.SonosZoneTopology;
+import org.openhab.binding.sonos.internal.SonosZoneTopologyListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.collect.Lists;
@@ -69,12 +86,19 @@ import static org.openhab.binding.sonos.config.ZonePlayerConfiguration.UDN;
  * @author Karel Goderis - Initial contribution
  */
 public class ZonePlayerHandler extends BaseThingHandler implements
-UpnpIOParticipant, DiscoveryListener {
+UpnpIOParticipant, DiscoveryListener, SonosZoneTopologyListener,
+SonosPollingParticipant {
 
 	private Logger logger = LoggerFactory.getLogger(ZonePlayerHandler.class);
 
 	private UpnpIOService service;
 	private DiscoveryServiceRegistry discoveryServiceRegistry;
+	private SonosZoneTopology zoneTopology;
+	private Map<String, ZonePlayerHandler> zonePlayers;
+	private SonosPollingScheduler pollingScheduler;
+	private SonosBrowseCache browseCache;
+	private ExecutorService browseExecutor;
+	private SonosLastChangeCache lastChangeCache;
 	private ScheduledFuture<?> pollingJob;
 	private Calendar lastOPMLQuery = null;
 	private SonosZonePlayerState savedState = null;
@@ -82,40 +106,89 @@ UpnpIOParticipant, DiscoveryListener {
 	private final static Collection<String> SERVICE_SUBSCRIPTIONS = Lists
 			.newArrayList("DeviceProperties", "AVTransport",
 					"ZoneGroupTopology", "GroupManagement", "RenderingControl",
-					"AudioIn");
+					"AudioIn", "ContentDirectory");
 	protected final static int SUBSCRIPTION_DURATION = 600;
+
+	/**
+	 * The services whose variables are requested by a full poll. In event-first
+	 * mode the full poll only runs while one of them is not evented.
+	 */
+	private final static Collection<String> POLLED_SERVICES = Lists
+			.newArrayList("DeviceProperties", "AVTransport");
+
 	private static final int SOCKET_TIMEOUT = 5000;
+	private static final int BROWSE_PAGE_SIZE = 200;
 
 	/**
 	 * The default refresh interval when not specified in channel configuration.
 	 */
 	private static final int DEFAULT_REFRESH_INTERVAL = 60;
 
-	private Map<String, String> stateMap = Collections
-			.synchronizedMap(new HashMap<String, String>());
+	private SonosStateStore stateStore = new SonosStateStore();
+
+	private SonosLastChangeTracker lastChangeTracker;
+
+	/**
+	 * In event-first mode variables of services with an active GENA
+	 * subscription are only updated from events.
+	 */
+	private boolean eventFirst = false;
+
+	/** time in ms of the last GENA event, by service */
+	private Map<String, Long> eventTimes = new ConcurrentHashMap<String, Long>();
 
-	private Runnable pollingRunnable = new Runnable() {
+	/** time in ms the GENA subscription was last requested, by service */
+	private Map<String, Long> subscriptionTimes = new ConcurrentHashMap<String, Long>();
 
+	private Runnable currentURIFormattedCall = new Runnable() {
 		@Override
 		public void run() {
-			try {
-				updateCurrentURIFormatted();
-				updateZoneInfo();
-				updateRunningAlarmProperties();
-				updateLed();
-				updateMediaInfo();
-			} catch (Exception e) {
-				logger.debug("Exception during poll : {}", e);
-			}
+			updateCurrentURIFormatted();
+		}
+	};
+
+	private Runnable zoneInfoCall = new Runnable() {
+		@Override
+		public void run() {
+			updateZoneInfo();
+		}
+	};
+
+	private Runnable runningAlarmPropertiesCall = new Runnable() {
+		@Override
+		public void run() {
+			updateRunningAlarmProperties();
+		}
+	};
+
+	private Runnable ledCall = new Runnable() {
+		@Override
+		public void run() {
+			updateLed();
+		}
+	};
+
+	private Runnable mediaInfoCall = new Runnable() {
+		@Override
+		public void run() {
+			updateMediaInfo();
 		}
 	};
 
 	private String opmlPartnerID;
 
 	public ZonePlayerHandler(Thing thing, UpnpIOService upnpIOService,
-			DiscoveryServiceRegistry discoveryServiceRegistry, String opmlPartnerID) {
+			DiscoveryServiceRegistry discoveryServiceRegistry,
+			SonosBindingContext context, String opmlPartnerID) {
 		super(thing);
 		this.opmlPartnerID = opmlPartnerID;
+		this.zoneTopology = context.getZoneTopology();
+		this.zonePlayers = context.getZonePlayers();
+		this.pollingScheduler = context.getPollingScheduler();
+		this.browseCache = context.getBrowseCache();
+		this.browseExecutor = context.getBrowseExecutor();
+		this.lastChangeCache = context.getLastChangeCache();
+		this.lastChangeTracker = new SonosLastChangeTracker(lastChangeCache);
 
 		logger.debug("Creating a ZonePlayerHandler for thing '{}'", getThing()
 				.getUID());
@@ -137,6 +210,12 @@ UpnpIOParticipant, DiscoveryListener {
 			pollingJob.cancel(true);
 			pollingJob = null;
 		}
+
+		zoneTopology.removeListener(this);
+
+		// the handler may be initialized again, which has to publish all states
+		stateStore.clear();
+		lastChangeTracker.clear();
 		
 		if (getThing().getStatus() == ThingStatus.ONLINE) {
 			logger.debug("Setting status for thing '{}' to OFFLINE", getThing()
@@ -151,6 +230,14 @@ UpnpIOParticipant, DiscoveryListener {
 		ZonePlayerConfiguration configuration = getConfigAs(ZonePlayerConfiguration.class);
 
 		if (configuration.udn != null) {
+			eventFirst = configuration.eventFirst != null
+					&& configuration.eventFirst;
+			zoneTopology.addListener(this);
+			if (zoneTopology.getZoneGroupState(configuration.udn) != null) {
+				// the household is already known through other players
+				onTopologyChanged(zoneTopology,
+						Collections.singletonList(configuration.udn));
+			}
 			onSubscription();
 			onUpdate();
 			super.initialize();
@@ -180,6 +267,14 @@ UpnpIOParticipant, DiscoveryListener {
 
 	@Override
 	public void handleCommand(ChannelUID channelUID, Command command) {
+		if (command instanceof RefreshType) {
+			State state = stateStore.getChannelState(channelUID.getId());
+			if (state != null) {
+				updateState(channelUID, state);
+			}
+			return;
+		}
+
 		switch (channelUID.getId()) {
 		case LED:
 			this.setLed(command);
@@ -261,206 +356,313 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	private void restoreAllPlayerState() {
-		Collection<Thing> allThings = thingRegistry.getAll();
-		for (Thing aThing : allThings) {
-			if (aThing.getThingTypeUID().equals(
-					this.getThing().getThingTypeUID())) {
-				ZonePlayerHandler handler = (ZonePlayerHandler) aThing.getHandler();
-				handler.restoreState();
-			}
+		for (ZonePlayerHandler handler : zonePlayers.values()) {
+			handler.restoreState();
 		}
 	}
 
 	private void saveAllPlayerState() {
-		Collection<Thing> allThings = thingRegistry.getAll();
-		for (Thing aThing : allThings) {
-			if (aThing.getThingTypeUID().equals(
-					this.getThing().getThingTypeUID())) {
-				ZonePlayerHandler handler = (ZonePlayerHandler) aThing.getHandler();
-				handler.saveState();
-			}
+		for (ZonePlayerHandler handler : zonePlayers.values()) {
+			handler.saveState();
 		}
 	}
 
+	@Override
 	public void onValueReceived(String variable, String value, String service) {
+		// values passed in by the UPnP IO service stem from GENA events
+		if (service != null) {
+			eventTimes.put(service, System.currentTimeMillis());
+		}
+		updateValue(variable, value, service);
+	}
+
+	protected void updateValue(String variable, String value, String service) {
 
 		logger.trace("Received pair '{}':'{}' (service '{}') for thing '{}'", new Object[] {
 				variable, value, service, this.getThing().getUID() });
 
-		this.stateMap.put(variable, value);
+		if (variable.equals("LastChange") && value != null
+				&& SonosLastChangeCache.isSupported(service)) {
+			// the state store skips the variables which did not change
+			Map<String, String> values = lastChangeTracker.update(service,
+					value);
+			for (String lastChangeVariable : values.keySet()) {
+				updateValue(lastChangeVariable, values.get(lastChangeVariable),
+						service);
+			}
+			updateRateChannel(LASTCHANGEDUPLICATES,
+					lastChangeTracker.getDuplicateRate());
+			updateRateChannel(LASTCHANGECACHEHITS,
+					lastChangeCache.getHitRate());
+			return;
+		}
+
+		if (!stateStore.update(variable, value)) {
+			// neither the channels nor the derived values change
+			return;
+		}
 
 		// pre-process some variables, eg XML processing
-		if (service.equals("AVTransport") && variable.equals("LastChange")) {
-			Map<String, String> parsedValues = SonosXMLParser
-					.getAVTransportFromXML(value);
-			for (String parsedValue : parsedValues.keySet()) {
-				onValueReceived(parsedValue, parsedValues.get(parsedValue),
-						"AVTransport");
+		if (service.equals("AVTransport") && variable.equals("AVTransportURI")) {
+			// evented counterpart of GetMediaInfo
+			updateValue("CurrentURI", value, "AVTransport");
+		}
+
+		if (service.equals("AVTransport")
+				&& variable.equals("AVTransportURIMetaData")) {
+			updateValue("CurrentURIMetaData", value, "AVTransport");
+		}
+
+		if (service.equals("ContentDirectory")) {
+			// keep the browse cache of the household up to date
+			if (variable.equals("ContainerUpdateIDs") && value != null) {
+				onContainersUpdated(value);
+			} else if (variable.equals("SavedQueuesUpdateID")) {
+				browseCache.invalidate(getHouseholdID(), "SQ:");
+			} else if (variable.equals("ShareListUpdateID")) {
+				browseCache.invalidate(getHouseholdID(), "A:");
+			} else if (variable.equals("RadioFavoritesUpdateID")) {
+				browseCache.invalidate(getHouseholdID(), "R:");
 			}
 		}
 
-		if (service.equals("RenderingControl") && variable.equals("LastChange")) {
-			Map<String, String> parsedValues = SonosXMLParser
-					.getRenderingControlFromXML(value);
-			for (String parsedValue : parsedValues.keySet()) {
-				onValueReceived(parsedValue, parsedValues.get(parsedValue),
-						"RenderingControl");
-			}
+		if (service.equals("DeviceProperties") && variable.equals("ZoneName")) {
+			// evented counterpart of GetZoneAttributes
+			updateValue("CurrentZoneName", value, "DeviceProperties");
 		}
 
 		// update the appropriate channel
 		switch (variable) {
 		case "TransportState": {
-			updateState(new ChannelUID(getThing().getUID(), STATE),
-					(stateMap.get("TransportState") != null) ? new StringType(
-							stateMap.get("TransportState")) : UnDefType.UNDEF);
-			if (stateMap.get("TransportState").equals("PLAYING")) {
-				updateState(new ChannelUID(getThing().getUID(), CONTROL),
-						PlayPauseType.PLAY);
+			updateChannelState(STATE,
+					(stateStore.get("TransportState") != null) ? new StringType(
+							stateStore.get("TransportState")) : UnDefType.UNDEF);
+			if (stateStore.get("TransportState").equals("PLAYING")) {
+				updateChannelState(CONTROL, PlayPauseType.PLAY);
 			}
-			if (stateMap.get("TransportState").equals("STOPPED")) {
-				updateState(new ChannelUID(getThing().getUID(), CONTROL),
-						PlayPauseType.PAUSE);				
+			if (stateStore.get("TransportState").equals("STOPPED")) {
+				updateChannelState(CONTROL, PlayPauseType.PAUSE);				
 			}
-			if (stateMap.get("TransportState").equals("PAUSED_PLAYBACK")) {
-				updateState(new ChannelUID(getThing().getUID(), CONTROL),
-						PlayPauseType.PAUSE);
+			if (stateStore.get("TransportState").equals("PAUSED_PLAYBACK")) {
+				updateChannelState(CONTROL, PlayPauseType.PAUSE);
 			}
 			break;
 		}
 		case "CurrentLEDState": {
 			State newState = UnDefType.UNDEF;
-			if (stateMap.get("CurrentLEDState") != null) {
-				if (stateMap.get("CurrentLEDState").equals("On")) {
+			if (stateStore.get("CurrentLEDState") != null) {
+				if (stateStore.get("CurrentLEDState").equals("On")) {
 					newState = OnOffType.ON;
 				} else {
 					newState = OnOffType.OFF;
 				}
 			}
-			updateState(new ChannelUID(getThing().getUID(), LED), newState);
+			updateChannelState(LED, newState);
 			break;
 		}
 		case "CurrentZoneName": {
-			updateState(new ChannelUID(getThing().getUID(), ZONENAME),
-					(stateMap.get("CurrentZoneName") != null) ? new StringType(
-							stateMap.get("CurrentZoneName")) : UnDefType.UNDEF);
+			updateChannelState(ZONENAME,
+					(stateStore.get("CurrentZoneName") != null) ? new StringType(
+							stateStore.get("CurrentZoneName")) : UnDefType.UNDEF);
+			break;
 		}
 		case "ZoneGroupState": {
-			updateState(new ChannelUID(getThing().getUID(), ZONEGROUP),
-					(stateMap.get("ZoneGroupState") != null) ? new StringType(
-							stateMap.get("ZoneGroupState")) : UnDefType.UNDEF);
+			// the channel is updated through onTopologyChanged(), for all
+			// players of the household at once
+			if (value == null) {
+				updateChannelState(ZONEGROUP, UnDefType.UNDEF);
+			} else {
+				zoneTopology.update(getUDN(), value);
+			}
 			break;
 		}
 		case "LocalGroupUUID": {
-			updateState(new ChannelUID(getThing().getUID(), ZONEGROUPID),
-					(stateMap.get("LocalGroupUUID") != null) ? new StringType(
-							stateMap.get("LocalGroupUUID")) : UnDefType.UNDEF);
+			updateChannelState(ZONEGROUPID,
+					(stateStore.get("LocalGroupUUID") != null) ? new StringType(
+							stateStore.get("LocalGroupUUID")) : UnDefType.UNDEF);
 			break;
 		}
 		case "GroupCoordinatorIsLocal": {
 			State newState = UnDefType.UNDEF;
-			if (stateMap.get("GroupCoordinatorIsLocal") != null) {
-				if (stateMap.get("GroupCoordinatorIsLocal").equals("On")) {
+			if (stateStore.get("GroupCoordinatorIsLocal") != null) {
+				if (stateStore.get("GroupCoordinatorIsLocal").equals("On")) {
 					newState = OnOffType.ON;
 				} else {
 					newState = OnOffType.OFF;
 				}
 			}
-			updateState(new ChannelUID(getThing().getUID(), LOCALCOORDINATOR),
-					newState);
+			updateChannelState(LOCALCOORDINATOR, newState);
 			break;
 		}
 		case "VolumeMaster": {
-			updateState(new ChannelUID(getThing().getUID(), VOLUME),
-					(stateMap.get("VolumeMaster") != null) ? new PercentType(
-							stateMap.get("VolumeMaster")) : UnDefType.UNDEF);
+			updateChannelState(VOLUME,
+					(stateStore.get("VolumeMaster") != null) ? new PercentType(
+							stateStore.get("VolumeMaster")) : UnDefType.UNDEF);
 			break;
 		}
 		case "MuteMaster": {
 			State newState = UnDefType.UNDEF;
-			if (stateMap.get("MuteMaster") != null) {
-				if (stateMap.get("MuteMaster").equals("On")) {
+			if (stateStore.get("MuteMaster") != null) {
+				if (stateStore.get("MuteMaster").equals("On")) {
 					newState = OnOffType.ON;
 				} else {
 					newState = OnOffType.OFF;
 				}
 			}
-			updateState(new ChannelUID(getThing().getUID(), MUTE), newState);
+			updateChannelState(MUTE, newState);
 			break;
 		}
 		case "LineInConnected": {
 			State newState = UnDefType.UNDEF;
-			if (stateMap.get("LineInConnected") != null) {
-				if (stateMap.get("LineInConnected").equals("On")) {
+			if (stateStore.get("LineInConnected") != null) {
+				if (stateStore.get("LineInConnected").equals("On")) {
 					newState = OnOffType.ON;
 				} else {
 					newState = OnOffType.OFF;
 				}
 			}
-			updateState(new ChannelUID(getThing().getUID(), LINEIN), newState);
+			updateChannelState(LINEIN, newState);
 			break;
 		}
 		case "AlarmRunning": {
 			State newState = UnDefType.UNDEF;
-			if (stateMap.get("AlarmRunning") != null) {
-				if (stateMap.get("AlarmRunning").equals("On")) {
+			if (stateStore.get("AlarmRunning") != null) {
+				if (stateStore.get("AlarmRunning").equals("On")) {
 					newState = OnOffType.ON;
 				} else {
 					newState = OnOffType.OFF;
 				}
 			}
-			updateState(new ChannelUID(getThing().getUID(), ALARMRUNNING),
-					newState);
+			updateChannelState(ALARMRUNNING, newState);
 			break;
 		}
 		case "RunningAlarmProperties": {
-			updateState(
-					new ChannelUID(getThing().getUID(), ALARMPROPERTIES),
-					(stateMap.get("RunningAlarmProperties") != null) ? new StringType(
-							stateMap.get("RunningAlarmProperties"))
+			updateChannelState(ALARMPROPERTIES,
+					(stateStore.get("RunningAlarmProperties") != null) ? new StringType(
+							stateStore.get("RunningAlarmProperties"))
 					: UnDefType.UNDEF);
 			break;
 		}
 		case "CurrentURIFormatted": {
-			updateState(
-					new ChannelUID(getThing().getUID(), CURRENTTRACK),
-					(stateMap.get("CurrentURIFormatted") != null) ? new StringType(
-							stateMap.get("CurrentURIFormatted"))
+			updateChannelState(CURRENTTRACK,
+					(stateStore.get("CurrentURIFormatted") != null) ? new StringType(
+							stateStore.get("CurrentURIFormatted"))
 					: UnDefType.UNDEF);
 			break;
 		}
 		case "CurrentTitle": {
-			updateState(new ChannelUID(getThing().getUID(), CURRENTTITLE),
-					(stateMap.get("CurrentTitle") != null) ? new StringType(
-							stateMap.get("CurrentTitle")) : UnDefType.UNDEF);
+			updateChannelState(CURRENTTITLE,
+					(stateStore.get("CurrentTitle") != null) ? new StringType(
+							stateStore.get("CurrentTitle")) : UnDefType.UNDEF);
 			break;
 		}
 		case "CurrentArtist": {
-			updateState(new ChannelUID(getThing().getUID(), CURRENTARTIST),
-					(stateMap.get("CurrentArtist") != null) ? new StringType(
-							stateMap.get("CurrentArtist")) : UnDefType.UNDEF);
+			updateChannelState(CURRENTARTIST,
+					(stateStore.get("CurrentArtist") != null) ? new StringType(
+							stateStore.get("CurrentArtist")) : UnDefType.UNDEF);
 			break;
 		}
 		case "CurrentAlbum": {
-			updateState(new ChannelUID(getThing().getUID(), CURRENTALBUM),
-					(stateMap.get("CurrentAlbum") != null) ? new StringType(
-							stateMap.get("CurrentAlbum")) : UnDefType.UNDEF);
+			updateChannelState(CURRENTALBUM,
+					(stateStore.get("CurrentAlbum") != null) ? new StringType(
+							stateStore.get("CurrentAlbum")) : UnDefType.UNDEF);
 			break;
 		}
 		}
 
 	}
 
+	/**
+	 * Publishes the state of a channel, unless it is already published.
+	 */
+	private void updateChannelState(String channelId, State state) {
+		if (stateStore.updateChannel(channelId, state)) {
+			updateState(new ChannelUID(getThing().getUID(), channelId), state);
+		}
+	}
+
+	/**
+	 * Publishes a rate in whole percent, so the channel is only updated when
+	 * the rate changes noticeably.
+	 */
+	private void updateRateChannel(String channelId, double rate) {
+		updateChannelState(channelId, new DecimalType(Math.round(rate * 100)));
+	}
+
+	@Override
+	public void onTopologyChanged(SonosZoneTopology topology,
+			Collection<String> members) {
+		String udn = getUDN();
+		if (members.contains(udn)) {
+			String zoneGroupState = topology.getZoneGroupState(udn);
+			updateChannelState(ZONEGROUP,
+					(zoneGroupState != null) ? new StringType(zoneGroupState)
+							: UnDefType.UNDEF);
+		}
+	}
+
 	private synchronized void onSubscription() {
 		// Set up GENA Subscriptions
 		if (service.isRegistered(this)) {
 			for (String subscription : SERVICE_SUBSCRIPTIONS) {
 				service.addSubscription(this, subscription,
 						SUBSCRIPTION_DURATION);
+				subscriptionTimes.put(subscription, System.currentTimeMillis());
 			}
 		}
 	}
 
+	/**
+	 * A subscription to one of the {@link #POLLED_SERVICES} is considered
+	 * lapsed when no event was received for the subscription duration. The
+	 * UPnP IO service does not report failed renewals, and these services
+	 * replace the full poll, so lapsed subscriptions are requested again and
+	 * their initial event confirms the subscription. The other subscriptions
+	 * are left to the renewal of the UPnP IO service, as their services may
+	 * stay quiet for long.
+	 */
+	private synchronized void renewLapsedSubscriptions() {
+		if (service.isRegistered(this)) {
+			long now = System.currentTimeMillis();
+			for (String subscription : POLLED_SERVICES) {
+				Long requested = subscriptionTimes.get(subscription);
+				if (!isEvented(subscription)
+						&& (requested == null || now - requested >= SUBSCRIPTION_DURATION * 1000L)) {
+					logger.debug("Renewing the lapsed subscription to '{}' for thing '{}'",
+							subscription, getThing().getUID());
+					service.removeSubscription(this, subscription);
+					service.addSubscription(this, subscription,
+							SUBSCRIPTION_DURATION);
+					subscriptionTimes.put(subscription, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param subscription
+	 *            the name of a service
+	 * @return true if event-first mode is enabled and an event of the service
+	 *         was received within the subscription duration
+	 */
+	protected boolean isEvented(String subscription) {
+		if (!eventFirst) {
+			return false;
+		}
+		Long lastEvent = eventTimes.get(subscription);
+		return lastEvent != null
+				&& System.currentTimeMillis() - lastEvent < SUBSCRIPTION_DURATION * 1000L;
+	}
+
+	private boolean isEvented(Collection<String> subscriptions) {
+		for (String subscription : subscriptions) {
+			if (!isEvented(subscription)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private synchronized void onUpdate() {
 		if (service.isRegistered(this)) {
 			if (pollingJob == null || pollingJob.isCancelled()) {
@@ -471,12 +673,31 @@ UpnpIOParticipant, DiscoveryListener {
 				if (refreshConfig != null) {
 					refreshInterval = Integer.parseInt((String) refreshConfig);
 				}
-				pollingJob = scheduler.scheduleAtFixedRate(pollingRunnable, 0,
-						refreshInterval, TimeUnit.SECONDS);
+				pollingJob = pollingScheduler.schedule(getThing().getUID()
+						.toString(), this, refreshInterval, TimeUnit.SECONDS);
 			}
 		}
 	}
 
+	@Override
+	public Collection<Runnable> getPollingCalls() {
+		if (eventFirst) {
+			renewLapsedSubscriptions();
+		}
+
+		List<Runnable> calls = new ArrayList<Runnable>();
+		calls.add(currentURIFormattedCall);
+		calls.add(runningAlarmPropertiesCall);
+		calls.add(ledCall);
+		if (!eventFirst || !isEvented(POLLED_SERVICES)) {
+			calls.add(zoneInfoCall);
+			calls.add(mediaInfoCall);
+		}
+		// otherwise only poll what is not covered by the subscriptions
+
+		return calls;
+	}
+
 	protected void updateMediaInfo() {
 		Map<String, String> inputs = new HashMap<String, String>();
 		inputs.put("InstanceID", "0");
@@ -485,7 +706,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"GetMediaInfo", inputs);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -494,7 +715,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"DeviceProperties", "GetZoneAttributes", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable),
+			this.updateValue(variable, result.get(variable),
 					"DeviceProperties");
 		}
 	}
@@ -504,7 +725,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"DeviceProperties", "GetLEDState", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable),
+			this.updateValue(variable, result.get(variable),
 					"DeviceProperties");
 		}
 	}
@@ -514,7 +735,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"GetTimeNow", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AlarmClock");
+			this.updateValue(variable, result.get(variable), "AlarmClock");
 		}
 	}
 
@@ -523,7 +744,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"GetPositionInfo", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -542,7 +763,7 @@ UpnpIOParticipant, DiscoveryListener {
 		result.put("RunningAlarmProperties", newStringValue);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -555,27 +776,14 @@ UpnpIOParticipant, DiscoveryListener {
 		result.putAll(result2);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable),
+			this.updateValue(variable, result.get(variable),
 					"DeviceProperties");
 		}
 	}
 
 	public String getCoordinator() {
-
-		if (stateMap.get("ZoneGroupState") != null) {
-
-			Collection<SonosZoneGroup> zoneGroups = SonosXMLParser
-					.getZoneGroupFromXML(stateMap.get("ZoneGroupState"));
-
-			for (SonosZoneGroup zg : zoneGroups) {
-				if (zg.getMembers().contains(
-						getThing().getConfiguration().get(UDN))) {
-					return zg.getCoordinator();
-				}
-			}
-		}
-
-		return (String) getThing().getConfiguration().get(UDN);
+		String coordinator = zoneTopology.getCoordinator(getUDN());
+		return (coordinator != null) ? coordinator : getUDN();
 	}
 
 	public boolean isCoordinator() {
@@ -608,7 +816,7 @@ UpnpIOParticipant, DiscoveryListener {
 
 				String stationID = StringUtils.substringBetween(currentURI,
 						":s", "?sid");
-				String previousStationID = stateMap.get("StationID");
+				String previousStationID = stateStore.get("StationID");
 
 				Calendar now = Calendar.getInstance();
 				now.setTime(new Date());
@@ -619,7 +827,7 @@ UpnpIOParticipant, DiscoveryListener {
 						|| lastOPMLQuery == null
 						|| lastOPMLQuery.before(now)) {
 
-					this.onValueReceived("StationID", stationID, "AVTransport");
+					this.updateValue("StationID", stationID, "AVTransport");
 
 					String url = "http://opml.radiotime.com/Describe.ashx?c=nowplaying"
 							+ "&id=" + stationID
@@ -655,8 +863,8 @@ UpnpIOParticipant, DiscoveryListener {
 						}
 					}
 				} else {
-					resultString = stateMap.get("CurrentURIFormatted");
-					title = stateMap.get("CurrentTitle");
+					resultString = stateStore.get("CurrentURIFormatted");
+					title = stateStore.get("CurrentTitle");
 				}
 
 			} else {
@@ -683,21 +891,21 @@ UpnpIOParticipant, DiscoveryListener {
 				}
 			}
 
-			this.onValueReceived("CurrentURIFormatted", resultString,
+			this.updateValue("CurrentURIFormatted", resultString,
 					"AVTransport");
 
 			// update individual variables
-			this.onValueReceived("CurrentArtist", (artist != null) ? artist
+			this.updateValue("CurrentArtist", (artist != null) ? artist
 					: " ", "AVTransport");
-			this.onValueReceived("CurrentTitle", (title != null) ? title : " ",
+			this.updateValue("CurrentTitle", (title != null) ? title : " ",
 					"AVTransport");
-			this.onValueReceived("CurrentAlbum", (album != null) ? album : " ",
+			this.updateValue("CurrentAlbum", (album != null) ? album : " ",
 					"AVTransport");
 		}
 	}
 
 	public boolean isGroupCoordinator() {
-		String value = stateMap.get("GroupCoordinatorIsLocal");
+		String value = stateStore.get("GroupCoordinatorIsLocal");
 		if (value != null) {
 			return value.equals("1") ? true : false;
 		}
@@ -711,13 +919,15 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public String getCurrentURI() {
-		updateMediaInfo();
-		return stateMap.get("CurrentURI");
+		if (!isEvented("AVTransport")) {
+			updateMediaInfo();
+		}
+		return stateStore.get("CurrentURI");
 	}
 
 	public SonosMetaData getCurrentURIMetadata() {
-		if (stateMap.get("CurrentURIMetaData") != null) {
-			return SonosXMLParser.getMetaDataFromXML(stateMap
+		if (stateStore.get("CurrentURIMetaData") != null) {
+			return SonosXMLParser.getMetaDataFromXML(stateStore
 					.get("CurrentURIMetaData"));
 		} else {
 			return null;
@@ -725,8 +935,8 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public SonosMetaData getTrackMetadata() {
-		if (stateMap.get("CurrentTrackMetaData") != null) {
-			return SonosXMLParser.getMetaDataFromXML(stateMap
+		if (stateStore.get("CurrentTrackMetaData") != null) {
+			return SonosXMLParser.getMetaDataFromXML(stateStore
 					.get("CurrentTrackMetaData"));
 		} else {
 			return null;
@@ -735,8 +945,8 @@ UpnpIOParticipant, DiscoveryListener {
 
 	public SonosMetaData getEnqueuedTransportURIMetaData() {
 
-		if (stateMap.get("EnqueuedTransportURIMetaData") != null) {
-			return SonosXMLParser.getMetaDataFromXML(stateMap
+		if (stateStore.get("EnqueuedTransportURIMetaData") != null) {
+			return SonosXMLParser.getMetaDataFromXML(stateStore
 					.get("EnqueuedTransportURIMetaData"));
 		} else {
 			return null;
@@ -744,18 +954,21 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public String getMACAddress() {
-		updateZoneInfo();
-		return stateMap.get("MACAddress");
+		if (stateStore.get("MACAddress") == null) {
+			// the MAC address does not change, query it once
+			updateZoneInfo();
+		}
+		return stateStore.get("MACAddress");
 	}
 
 	public String getPosition() {
 		updatePosition();
-		return stateMap.get("RelTime");
+		return stateStore.get("RelTime");
 	}
 
 	public long getCurrenTrackNr() {
 		updatePosition();
-		String value = stateMap.get("Track");
+		String value = stateStore.get("Track");
 		if (value != null) {
 			return Long.valueOf(value);
 		} else {
@@ -764,11 +977,11 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public String getVolume() {
-		return stateMap.get("VolumeMaster");
+		return stateStore.get("VolumeMaster");
 	}
 
 	public String getTransportState() {
-		return stateMap.get("TransportState");
+		return stateStore.get("TransportState");
 	}
 
 	public List<SonosEntry> getArtists(String filter) {
@@ -826,43 +1039,171 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	protected List<SonosEntry> getEntries(String type, String filter) {
+		final List<SonosEntry> resultList = new ArrayList<SonosEntry>();
+
+		browse(type, filter, new SonosEntryVisitor() {
+			@Override
+			public boolean visit(SonosEntry entry) {
+				resultList.add(entry);
+				return true;
+			}
+		});
+
+		return resultList;
+	}
+
+	/**
+	 * Browses the children of a ContentDirectory object. The next page is
+	 * requested on the browse executor while the entries of the current page
+	 * are visited. Complete
+	 * results are kept in the browse cache of the household, except for the
+	 * queue which belongs to this player.
+	 * 
+	 * @param objectId
+	 *            the id of the object to browse
+	 * @param filter
+	 *            the properties to return
+	 * @param visitor
+	 *            receives the entries, and may stop the browse
+	 */
+	public void browse(String objectId, String filter, SonosEntryVisitor visitor) {
+		String household = null;
+		List<SonosEntry> complete = null;
+		long generation = 0;
+
+		if (!objectId.startsWith("Q:")) {
+			household = getHouseholdID();
+			List<SonosEntry> cached = browseCache.get(household, objectId,
+					filter);
+			if (cached != null) {
+				for (SonosEntry entry : cached) {
+					if (!visitor.visit(entry)) {
+						break;
+					}
+				}
+				return;
+			}
+			complete = new ArrayList<SonosEntry>();
+			// results invalidated during the browse are not cached
+			generation = browseCache.getGeneration();
+		}
+
 		long startAt = 0;
+		Map<String, String> result = invokeBrowse(objectId, filter, startAt);
 
+		while (result != null) {
+			long totalMatches;
+			long numberReturned;
+			try {
+				totalMatches = Long.valueOf(result.get("TotalMatches"));
+				numberReturned = Long.valueOf(result.get("NumberReturned"));
+			} catch (NumberFormatException e) {
+				logger.debug("Browsing '{}' failed for thing '{}'", objectId,
+						getThing().getUID());
+				return;
+			}
+			startAt = startAt + numberReturned;
+
+			// fetch the next page while this one is parsed and visited
+			Future<Map<String, String>> nextPage = null;
+			if (numberReturned > 0 && startAt < totalMatches) {
+				try {
+					nextPage = browseExecutor.submit(browseCall(objectId,
+							filter, startAt));
+				} catch (RejectedExecutionException e) {
+					// the binding is stopping
+					return;
+				}
+			}
+
+			String page = result.get("Result");
+			if (page != null) {
+				for (SonosEntry entry : SonosXMLParser
+						.getEntriesFromString(page)) {
+					if (complete != null) {
+						complete.add(entry);
+					}
+					if (!visitor.visit(entry)) {
+						if (nextPage != null) {
+							nextPage.cancel(false);
+						}
+						return;
+					}
+				}
+			}
+
+			if (nextPage == null) {
+				break;
+			}
+
+			try {
+				result = nextPage.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				logger.debug("Browsing '{}' failed for thing '{}' : {}",
+						new Object[] { objectId, getThing().getUID(),
+								e.getCause() });
+				return;
+			}
+		}
+
+		if (complete != null && result != null) {
+			browseCache.put(household, objectId, filter, complete, generation);
+		}
+	}
+
+	private Map<String, String> invokeBrowse(String objectId, String filter,
+			long startAt) {
 		Map<String, String> inputs = new HashMap<String, String>();
-		inputs.put("ObjectID", type);
+		inputs.put("ObjectID", objectId);
 		inputs.put("BrowseFlag", "BrowseDirectChildren");
 		inputs.put("Filter", filter);
 		inputs.put("StartingIndex", Long.toString(startAt));
-		inputs.put("RequestedCount", Integer.toString(200));
+		inputs.put("RequestedCount", Integer.toString(BROWSE_PAGE_SIZE));
 		inputs.put("SortCriteria", "");
 
-		List<SonosEntry> resultList = null;
-
-		Map<String, String> result = service.invokeAction(this,
-				"ContentDirectory", "Browse", inputs);
-		Long totalMatches = Long.valueOf(result.get("TotalMatches"));
-		Long initialNumberReturned = Long.valueOf(result.get("NumberReturned"));
-		String initialResult = result.get("Result");
-
-		resultList = SonosXMLParser.getEntriesFromString(initialResult);
-		startAt = startAt + initialNumberReturned;
+		return service.invokeAction(this, "ContentDirectory", "Browse", inputs);
+	}
 
-		while (startAt < totalMatches) {
+	private Callable<Map<String, String>> browseCall(final String objectId,
+			final String filter, final long startAt) {
+		return new Callable<Map<String, String>>() {
+			@Override
+			public Map<String, String> call() {
+				return invokeBrowse(objectId, filter, startAt);
+			}
+		};
+	}
 
-			inputs.put("StartingIndex", Long.toString(startAt));
-			result = service.invokeAction(this, "ContentDirectory", "Browse",
-					inputs);
+	/**
+	 * @return the id of the household of this player, or its UDN if the
+	 *         household is not known
+	 */
+	public String getHouseholdID() {
+		if (stateStore.get("CurrentHouseholdID") == null) {
+			// the household does not change, query it once
+			Map<String, String> result = service.invokeAction(this,
+					"DeviceProperties", "GetHouseholdID", null);
 
-			// Execute this action synchronously
-			String nextResult = result.get("Result");
-			Long numberReturned = Long.valueOf(result.get("NumberReturned"));
+			for (String variable : result.keySet()) {
+				this.updateValue(variable, result.get(variable),
+						"DeviceProperties");
+			}
+		}
 
-			resultList.addAll(SonosXMLParser.getEntriesFromString(nextResult));
+		String household = stateStore.get("CurrentHouseholdID");
+		return (household != null) ? household : getUDN();
+	}
 
-			startAt = startAt + numberReturned;
+	private void onContainersUpdated(String containerUpdateIDs) {
+		// comma separated pairs of container id and update id
+		String[] values = StringUtils.split(containerUpdateIDs, ',');
+		String household = getHouseholdID();
+		for (int i = 0; i < values.length; i += 2) {
+			browseCache.invalidate(household, values[i]);
 		}
-
-		return resultList;
 	}
 
 	/**
@@ -907,18 +1248,15 @@ UpnpIOParticipant, DiscoveryListener {
 						if (queued.getUpnpClass().contains(
 								"object.container.playlistContainer")) {
 							// we are playing a real 'saved' playlist
-							List<SonosEntry> playLists = getPlayLists();
-							for (SonosEntry someList : playLists) {
-								if (someList.getTitle().equals(
-										queued.getTitle())) {
-									savedState.entry = new SonosEntry(
-											someList.getId(),
-											someList.getTitle(),
-											someList.getParentId(), "", "", "",
-											someList.getUpnpClass(),
-											someList.getRes());
-									break;
-								}
+							SonosEntry someList = findPlayList(queued
+									.getTitle());
+							if (someList != null) {
+								savedState.entry = new SonosEntry(
+										someList.getId(),
+										someList.getTitle(),
+										someList.getParentId(), "", "", "",
+										someList.getUpnpClass(),
+										someList.getRes());
 							}
 
 						} else if (queued.getUpnpClass().contains(
@@ -932,31 +1270,26 @@ UpnpIOParticipant, DiscoveryListener {
 
 							// save the playlist
 							String existingList = "";
-							List<SonosEntry> playLists = getPlayLists();
-							for (SonosEntry someList : playLists) {
-								if (someList.getTitle().equals(
-										"openHAB-" + getUDN())) {
-									existingList = someList.getId();
-									break;
-								}
+							SonosEntry someList = findPlayList("openHAB-"
+									+ getUDN());
+							if (someList != null) {
+								existingList = someList.getId();
 							}
 
 							saveQueue("openHAB-" + getUDN(), existingList);
 
-							// get all the playlists and a ref to our
-							// saved list
-							playLists = getPlayLists();
-							for (SonosEntry someList : playLists) {
-								if (someList.getTitle().equals(
-										"openHAB-" + getUDN())) {
-									savedState.entry = new SonosEntry(
-											someList.getId(),
-											someList.getTitle(),
-											someList.getParentId(), "", "", "",
-											someList.getUpnpClass(),
-											someList.getRes());
-									break;
-								}
+							// a new playlist has to be looked up, an
+							// existing one keeps its id
+							if (someList == null) {
+								someList = findPlayList("openHAB-" + getUDN());
+							}
+							if (someList != null) {
+								savedState.entry = new SonosEntry(
+										someList.getId(),
+										someList.getTitle(),
+										someList.getParentId(), "", "", "",
+										someList.getUpnpClass(),
+										someList.getRes());
 							}
 
 						}
@@ -1023,6 +1356,30 @@ UpnpIOParticipant, DiscoveryListener {
 		}
 	}
 
+	/**
+	 * @param title
+	 *            the title of a saved playlist
+	 * @return the first saved playlist with the given title, or null
+	 */
+	protected SonosEntry findPlayList(final String title) {
+		final SonosEntry[] found = new SonosEntry[1];
+
+		// browse all playlists, so the complete result is cached for the
+		// next lookups
+		browse("SQ:", "dc:title,res,dc:creator,upnp:artist,upnp:album",
+				new SonosEntryVisitor() {
+					@Override
+					public boolean visit(SonosEntry entry) {
+						if (found[0] == null && entry.getTitle().equals(title)) {
+							found[0] = entry;
+						}
+						return true;
+					}
+				});
+
+		return found[0];
+	}
+
 	public void saveQueue(String name, String queueID) {
 
 		if (name != null && queueID != null) {
@@ -1031,11 +1388,17 @@ UpnpIOParticipant, DiscoveryListener {
 			inputs.put("Title", name);
 			inputs.put("ObjectID", queueID);
 
-			Map<String, String> result = service.invokeAction(this,
-					"AVTransport", "SaveQueue", inputs);
+			Map<String, String> result;
+			try {
+				result = service.invokeAction(this, "AVTransport",
+						"SaveQueue", inputs);
+			} finally {
+				// the saved playlists changed, do not wait for the event
+				browseCache.invalidate(getHouseholdID(), "SQ:");
+			}
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AVTransport");
 			}
 		}
@@ -1077,7 +1440,7 @@ UpnpIOParticipant, DiscoveryListener {
 						"RenderingControl", "SetVolume", inputs);
 
 				for (String variable : result.keySet()) {
-					this.onValueReceived(variable, result.get(variable),
+					this.updateValue(variable, result.get(variable),
 							"RenderingControl");
 				}
 			}
@@ -1107,7 +1470,7 @@ UpnpIOParticipant, DiscoveryListener {
 					"AVTransport", "AddURIToQueue", inputs);
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AVTransport");
 			}
 		}
@@ -1136,7 +1499,7 @@ UpnpIOParticipant, DiscoveryListener {
 					"AVTransport", "SetAVTransportURI", inputs);
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AVTransport");
 			}
 		}
@@ -1168,7 +1531,7 @@ UpnpIOParticipant, DiscoveryListener {
 					"AVTransport", "Seek", inputs);
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AVTransport");
 			}
 		}
@@ -1183,7 +1546,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"Play", inputs);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1192,7 +1555,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"Stop", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1201,7 +1564,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"Pause", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1217,7 +1580,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"RemoveAllTracksFromQueue", inputs);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1232,10 +1595,7 @@ UpnpIOParticipant, DiscoveryListener {
 
 			String remotePlayerName = command.toString();
 
-			Thing coordinatorThing = thingRegistry.getByUID(new ThingUID(
-					ZONEPLAYER_THING_TYPE_UID, getCoordinator()));
-			ZonePlayerHandler coordinatorHandler = (ZonePlayerHandler) coordinatorThing
-					.getHandler();
+			ZonePlayerHandler coordinatorHandler = getHandlerByName(getCoordinator());
 			ZonePlayerHandler remoteHandler = getHandlerByName(remotePlayerName);
 
 			// stop whatever is currently playing
@@ -1253,27 +1613,27 @@ UpnpIOParticipant, DiscoveryListener {
 		}
 	}
 
+	/**
+	 * @param remotePlayerName
+	 *            the UDN or the thing id of a zone player
+	 * @return the handler of the zone player, or null if there is none
+	 */
 	protected ZonePlayerHandler getHandlerByName(String remotePlayerName) {
 
-		if(thingRegistry!=null) {
+		if (remotePlayerName == null) {
+			return null;
+		}
+
+		ZonePlayerHandler handler = zonePlayers.get(remotePlayerName);
+		if (handler != null) {
+			return handler;
+		}
+
+		// things with a custom id are not indexed by their id
+		if (thingRegistry != null) {
 			Thing thing = thingRegistry.getByUID(new ThingUID(
 					ZONEPLAYER_THING_TYPE_UID, remotePlayerName));
-	
-			if (thing == null) {
-				Collection<Thing> allThings = thingRegistry.getAll();
-				for (Thing aThing : allThings) {
-					if (aThing.getThingTypeUID().equals(
-							this.getThing().getThingTypeUID())) {
-						if (aThing.getConfiguration().get(UDN)
-								.equals(remotePlayerName)) {
-							thing = aThing;
-							break;
-						}
-					}
-				}
-			}
-
-			if(thing != null) { 
+			if (thing != null && thing.getHandler() instanceof ZonePlayerHandler) {
 				return (ZonePlayerHandler) thing.getHandler();
 			}
 		}
@@ -1305,7 +1665,7 @@ UpnpIOParticipant, DiscoveryListener {
 						"RenderingControl", "SetMute", inputs);
 
 				for (String variable : result.keySet()) {
-					this.onValueReceived(variable, result.get(variable),
+					this.updateValue(variable, result.get(variable),
 							"RenderingControl");
 				}
 			}
@@ -1317,7 +1677,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"ListAlarms", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AlarmClock");
+			this.updateValue(variable, result.get(variable), "AlarmClock");
 		}
 
 		return SonosXMLParser.getAlarmsFromStringResult(result
@@ -1359,7 +1719,7 @@ UpnpIOParticipant, DiscoveryListener {
 					"AlarmClock", "UpdateAlarm", inputs);
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AlarmClock");
 			}
 		}
@@ -1442,11 +1802,11 @@ UpnpIOParticipant, DiscoveryListener {
 
 	public String getTime() {
 		updateTime();
-		return stateMap.get("CurrentLocalTime");
+		return stateStore.get("CurrentLocalTime");
 	}
 
 	public Boolean isAlarmRunning() {
-		return stateMap.get("AlarmRunning").equals("1") ? true : false;
+		return stateStore.get("AlarmRunning").equals("1") ? true : false;
 	}
 
 	public void snoozeAlarm(Command command) {
@@ -1474,7 +1834,7 @@ UpnpIOParticipant, DiscoveryListener {
 					"AVTransport", "SnoozeAlarm", inputs);
 
 			for (String variable : result.keySet()) {
-				this.onValueReceived(variable, result.get(variable),
+				this.updateValue(variable, result.get(variable),
 						"AVTransport");
 			}
 		} else {
@@ -1483,7 +1843,7 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public Boolean isLineInConnected() {
-		return stateMap.get("LineInConnected").equals("1") ? true : false;
+		return stateStore.get("LineInConnected").equals("1") ? true : false;
 	}
 
 	public void becomeStandAlonePlayer() {
@@ -1491,7 +1851,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"BecomeCoordinatorOfStandaloneGroup", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1511,8 +1871,8 @@ UpnpIOParticipant, DiscoveryListener {
 			becomeStandAlonePlayer();
 
 			List<SonosZoneGroup> currentSonosZoneGroups = new ArrayList<SonosZoneGroup>();
-			for (SonosZoneGroup grp : SonosXMLParser
-					.getZoneGroupFromXML(stateMap.get("ZoneGroupState"))) {
+			for (SonosZoneGroup grp : zoneTopology
+					.getHouseholdGroups(getUDN())) {
 				currentSonosZoneGroups.add((SonosZoneGroup) grp.clone());
 			}
 
@@ -1520,7 +1880,7 @@ UpnpIOParticipant, DiscoveryListener {
 			for (SonosZoneGroup group : currentSonosZoneGroups) {
 				for (String player : group.getMembers()) {
 					ZonePlayerHandler somePlayer = getHandlerByName(player);
-					if (somePlayer != this) {
+					if (somePlayer != null && somePlayer != this) {
 						somePlayer.becomeStandAlonePlayer();
 						somePlayer.stop();
 						addMember(StringType.valueOf(somePlayer.getUDN()));
@@ -1607,7 +1967,7 @@ UpnpIOParticipant, DiscoveryListener {
 						"DeviceProperties", "SetLEDState", inputs);
 
 				for (String variable : result.keySet()) {
-					this.onValueReceived(variable, result.get(variable),
+					this.updateValue(variable, result.get(variable),
 							"DeviceProperties");
 				}
 			}
@@ -1631,7 +1991,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"Previous", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1640,7 +2000,7 @@ UpnpIOParticipant, DiscoveryListener {
 				"Next", null);
 
 		for (String variable : result.keySet()) {
-			this.onValueReceived(variable, result.get(variable), "AVTransport");
+			this.updateValue(variable, result.get(variable), "AVTransport");
 		}
 	}
 
@@ -1691,8 +2051,8 @@ UpnpIOParticipant, DiscoveryListener {
 				// coordinator.setCurrentURI(theEntry);
 				coordinator.addURIToQueue(theEntry);
 
-				if (stateMap != null) {
-					String firstTrackNumberEnqueued = stateMap
+				if (stateStore != null) {
+					String firstTrackNumberEnqueued = stateStore
 							.get("FirstTrackNumberEnqueued");
 					if (firstTrackNumberEnqueued != null) {
 						coordinator.seek("TRACK_NR", firstTrackNumberEnqueued);
@@ -1710,34 +2070,34 @@ UpnpIOParticipant, DiscoveryListener {
 	}
 
 	public String getZoneName() {
-		return stateMap.get("ZoneName");
+		return stateStore.get("ZoneName");
 	}
 
 	public String getZoneGroupID() {
-		return stateMap.get("LocalGroupUUID");
+		return stateStore.get("LocalGroupUUID");
 	}
 
 	public String getRunningAlarmProperties() {
 		updateRunningAlarmProperties();
-		return stateMap.get("RunningAlarmProperties");
+		return stateStore.get("RunningAlarmProperties");
 	}
 
 	public String getMute() {
-		return stateMap.get("MuteMaster");
+		return stateStore.get("MuteMaster");
 	}
 
 	public boolean getLed() {
-		return stateMap.get("CurrentLEDState").equals("On") ? true : false;
+		return stateStore.get("CurrentLEDState").equals("On") ? true : false;
 	}
 
 	public String getCurrentZoneName() {
 		updateCurrentZoneName();
-		return stateMap.get("CurrentZoneName");
+		return stateStore.get("CurrentZoneName");
 	}
 
 	public String getCurrentURIFormatted() {
 		updateCurrentURIFormatted();
-		return stateMap.get("CurrentURIFormatted");
+		return stateStore.get("CurrentURIFormatted");
 	}
 
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.openhab.binding.sonos.handler.ZonePlayerHandler;
+
+/**
+ * The {@link SonosBindingContext} holds the services the
+ * {@link SonosHandlerFactory} shares with all zone player handlers.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosBindingContext {
+
+	private final SonosZoneTopology zoneTopology;
+	private final Map<String, ZonePlayerHandler> zonePlayers;
+	private final SonosPollingScheduler pollingScheduler;
+	private final SonosBrowseCache browseCache;
+	private final SonosLastChangeCache lastChangeCache;
+	private final ExecutorService browseExecutor;
+
+	/**
+	 * @param zoneTopology
+	 *            the zone groups of the households
+	 * @param zonePlayers
+	 *            the zone player handlers by UDN, read-only
+	 * @param pollingScheduler
+	 *            polls all zone players
+	 * @param browseCache
+	 *            the results of ContentDirectory browses
+	 * @param lastChangeCache
+	 *            the parsed LastChange payloads
+	 * @param browseExecutor
+	 *            fetches the next pages of ContentDirectory browses
+	 */
+	public SonosBindingContext(SonosZoneTopology zoneTopology,
+			Map<String, ZonePlayerHandler> zonePlayers,
+			SonosPollingScheduler pollingScheduler,
+			SonosBrowseCache browseCache,
+			SonosLastChangeCache lastChangeCache,
+			ExecutorService browseExecutor) {
+		this.zoneTopology = zoneTopology;
+		this.zonePlayers = zonePlayers;
+		this.pollingScheduler = pollingScheduler;
+		this.browseCache = browseCache;
+		this.lastChangeCache = lastChangeCache;
+		this.browseExecutor = browseExecutor;
+	}
+
+	public SonosZoneTopology getZoneTopology() {
+		return zoneTopology;
+	}
+
+	public Map<String, ZonePlayerHandler> getZonePlayers() {
+		return zonePlayers;
+	}
+
+	public SonosPollingScheduler getPollingScheduler() {
+		return pollingScheduler;
+	}
+
+	public SonosBrowseCache getBrowseCache() {
+		return browseCache;
+	}
+
+	public SonosLastChangeCache getLastChangeCache() {
+		return lastChangeCache;
+	}
+
+	public ExecutorService getBrowseExecutor() {
+		return browseExecutor;
+	}
+
+}
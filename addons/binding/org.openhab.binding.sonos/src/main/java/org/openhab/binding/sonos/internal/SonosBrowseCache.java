@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SonosBrowseCache} holds the results of ContentDirectory browses,
+ * shared by all zone players of a household. Results are keyed by object id
+ * and filter. They are invalidated when the Zone Players report an update of
+ * the container, and expire after {@link #MAX_AGE} in case such an event was
+ * missed.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosBrowseCache {
+
+	private Logger logger = LoggerFactory.getLogger(SonosBrowseCache.class);
+
+	/** time in ms a result is kept */
+	public static final long MAX_AGE = 600000;
+
+	/** largest result kept, in entries */
+	public static final int MAX_ENTRIES = 5000;
+
+	private static class Result {
+		private final List<SonosEntry> entries;
+		private final long time;
+
+		private Result(List<SonosEntry> entries, long time) {
+			this.entries = entries;
+			this.time = time;
+		}
+	}
+
+	/** results by household, then by object id and filter */
+	private final Map<String, Map<String, Result>> households = new HashMap<String, Map<String, Result>>();
+
+	/** number of invalidations so far */
+	private long generation = 0;
+
+	/**
+	 * @return the current generation, to be passed to
+	 *         {@link #put(String, String, String, List, long)} when the browse
+	 *         is complete
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @param household
+	 *            the id of the household
+	 * @param objectId
+	 *            the id of the browsed object
+	 * @param filter
+	 *            the filter of the browse
+	 * @return the entries, or null if there is no valid result
+	 */
+	public synchronized List<SonosEntry> get(String household,
+			String objectId, String filter) {
+		Map<String, Result> results = households.get(household);
+		if (results != null) {
+			String key = getKey(objectId, filter);
+			Result result = results.get(key);
+			if (result != null) {
+				if (System.currentTimeMillis() - result.time < MAX_AGE) {
+					return result.entries;
+				}
+				results.remove(key);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Keeps the complete result of a browse, unless results were invalidated
+	 * since the browse started.
+	 *
+	 * @param household
+	 *            the id of the household
+	 * @param objectId
+	 *            the id of the browsed object
+	 * @param filter
+	 *            the filter of the browse
+	 * @param entries
+	 *            all entries returned by the browse
+	 * @param browseGeneration
+	 *            the generation when the browse started, see
+	 *            {@link #getGeneration()}
+	 */
+	public synchronized void put(String household, String objectId,
+			String filter, List<SonosEntry> entries, long browseGeneration) {
+		if (entries.size() > MAX_ENTRIES || browseGeneration != generation) {
+			return;
+		}
+		Map<String, Result> results = households.get(household);
+		if (results == null) {
+			results = new HashMap<String, Result>();
+			households.put(household, results);
+		}
+		results.put(getKey(objectId, filter), new Result(
+				Collections.unmodifiableList(entries),
+				System.currentTimeMillis()));
+	}
+
+	/**
+	 * Removes the results of a container and of the objects below it.
+	 *
+	 * @param household
+	 *            the id of the household
+	 * @param containerId
+	 *            the id of the updated container, like SQ: or A:ALBUM
+	 */
+	public synchronized void invalidate(String household, String containerId) {
+		generation++;
+		Map<String, Result> results = households.get(household);
+		if (results != null && containerId != null) {
+			Iterator<String> it = results.keySet().iterator();
+			while (it.hasNext()) {
+				if (it.next().startsWith(containerId)) {
+					it.remove();
+					logger.trace("Invalidated browse results of '{}' in household '{}'",
+							containerId, household);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all results of a household.
+	 *
+	 * @param household
+	 *            the id of the household
+	 */
+	public synchronized void invalidateAll(String household) {
+		generation++;
+		households.remove(household);
+	}
+
+	private static String getKey(String objectId, String filter) {
+		// object ids do not contain line breaks
+		return objectId + "\n" + filter;
+	}
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+/**
+ * The {@link SonosEntryVisitor} receives the entries of a ContentDirectory
+ * browse one by one, while the next pages are still being fetched.
+ *
+ * @author agent - Initial contribution
+ */
+public interface SonosEntryVisitor {
+
+	/**
+	 * This method is called for every entry, in the order returned by the
+	 * Zone Player.
+	 *
+	 * @param entry
+	 *            The entry.
+	 * @return true to continue browsing, false to stop.
+	 */
+	public boolean visit(SonosEntry entry);
+
+}
@@ -11,7 +11,15 @@ package org.openhab.binding.sonos.internal;
 import static org.openhab.binding.sonos.SonosBindingConstants.*;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openhab.binding.sonos.handler.ZonePlayerHandler;
 import org.osgi.service.component.ComponentContext;
@@ -44,6 +52,29 @@ public class SonosHandlerFactory extends BaseThingHandlerFactory {
 	private UpnpIOService upnpIOService;
 	private DiscoveryServiceRegistry discoveryServiceRegistry;
 
+	// zone groups of the households, shared by all zone players
+	private final SonosZoneTopology zoneTopology = new SonosZoneTopology();
+
+	// zone player handlers by UDN, shared read-only with all zone players
+	private final ConcurrentMap<String, ZonePlayerHandler> zonePlayerHandlers = new ConcurrentHashMap<String, ZonePlayerHandler>();
+	private final Map<String, ZonePlayerHandler> zonePlayers = Collections.unmodifiableMap(zonePlayerHandlers);
+
+	// results of ContentDirectory browses, by household
+	private final SonosBrowseCache browseCache = new SonosBrowseCache();
+
+	// parsed LastChange payloads, shared by the players of a group
+	private final SonosLastChangeCache lastChangeCache = new SonosLastChangeCache();
+
+	// polls all zone players, optionally limited through configuration admin
+	private SonosPollingScheduler pollingScheduler;
+
+	// fetches the next pages of browses, apart from the shared thing handler pool
+	private ExecutorService browseExecutor;
+	private static final int BROWSE_THREADS = 4;
+
+	// the services above, handed to the zone players
+	private SonosBindingContext context;
+
 	// optional OPML partner id that can be configured through configuration admin 
 	private String opmlPartnerID = null;
 	
@@ -53,7 +84,46 @@ public class SonosHandlerFactory extends BaseThingHandlerFactory {
     	super.activate(componentContext);
     	Dictionary<String, Object> properties = componentContext.getProperties();
 		opmlPartnerID = (String) properties.get("opmlPartnerID");
+
+		int maxConcurrentPolls = SonosPollingScheduler.DEFAULT_MAX_CONCURRENT_CALLS;
+		Object maxConcurrentPollsConfig = properties.get("maxConcurrentPolls");
+		if (maxConcurrentPollsConfig != null) {
+			try {
+				maxConcurrentPolls = Integer.parseInt(maxConcurrentPollsConfig.toString());
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid value '{}' for maxConcurrentPolls, using {}",
+						maxConcurrentPollsConfig, maxConcurrentPolls);
+			}
+		}
+		pollingScheduler = new SonosPollingScheduler(maxConcurrentPolls);
+		browseExecutor = Executors.newFixedThreadPool(BROWSE_THREADS,
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "sonos-browse-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		context = new SonosBindingContext(zoneTopology, zonePlayers,
+				pollingScheduler, browseCache, lastChangeCache, browseExecutor);
     };
+
+    protected void deactivate(ComponentContext componentContext) {
+    	if (pollingScheduler != null) {
+    		pollingScheduler.shutdown();
+    		pollingScheduler = null;
+    		context = null;
+    	}
+    	if (browseExecutor != null) {
+    		browseExecutor.shutdownNow();
+    		browseExecutor = null;
+    	}
+    	super.deactivate(componentContext);
+    }
     
     @Override
     public Thing createThing(ThingTypeUID thingTypeUID, Configuration configuration,
@@ -81,11 +151,29 @@ public class SonosHandlerFactory extends BaseThingHandlerFactory {
 
         if (thingTypeUID.equals(ZONEPLAYER_THING_TYPE_UID)) {
         	logger.debug("Creating a ZonePlayerHandler for thing '{}' with UDN '{}'",thing.getUID(),thing.getConfiguration().get(UDN));
-            return new ZonePlayerHandler(thing, upnpIOService, discoveryServiceRegistry, opmlPartnerID);
+            ZonePlayerHandler handler = new ZonePlayerHandler(thing,
+                    upnpIOService, discoveryServiceRegistry, context,
+                    opmlPartnerID);
+            String udn = (String) thing.getConfiguration().get(UDN);
+            if (udn != null) {
+            	zonePlayerHandlers.put(udn, handler);
+            }
+            return handler;
         }
 
         return null;
     }
+
+    @Override
+    protected void removeHandler(ThingHandler thingHandler) {
+    	if (thingHandler instanceof ZonePlayerHandler) {
+    		String udn = ((ZonePlayerHandler) thingHandler).getUDN();
+    		if (udn != null) {
+    			zonePlayerHandlers.remove(udn, thingHandler);
+    		}
+    	}
+    	super.removeHandler(thingHandler);
+    }
     
     
     private ThingUID getPlayerUID(ThingTypeUID thingTypeUID, ThingUID thingUID,
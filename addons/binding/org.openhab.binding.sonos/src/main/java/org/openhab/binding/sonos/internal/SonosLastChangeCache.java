@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link SonosLastChangeCache} holds the parsed content of the most recent
+ * LastChange payloads, shared by all zone players. The players of a group are
+ * sent the same payloads, so a payload is only parsed by the first player
+ * receiving it.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosLastChangeCache {
+
+	/** number of payloads kept */
+	public static final int MAX_PAYLOADS = 64;
+
+	/** parsed values by service and payload, least recently used first */
+	private final Map<String, Map<String, String>> payloads = new LinkedHashMap<String, Map<String, String>>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, Map<String, String>> eldest) {
+			return size() > MAX_PAYLOADS;
+		}
+	};
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param service
+	 *            the service which sent the payload
+	 * @return true if the LastChange payloads of the service can be parsed
+	 */
+	public static boolean isSupported(String service) {
+		return "AVTransport".equals(service)
+				|| "RenderingControl".equals(service);
+	}
+
+	/**
+	 * @param service
+	 *            the service which sent the payload, see
+	 *            {@link #isSupported(String)}
+	 * @param payload
+	 *            the LastChange payload
+	 * @return the values of the payload by variable, not to be modified
+	 */
+	public Map<String, String> parse(String service, String payload) {
+		String key = service + "\n" + payload;
+		synchronized (this) {
+			Map<String, String> values = payloads.get(key);
+			if (values != null) {
+				hits++;
+				return values;
+			}
+			misses++;
+		}
+
+		// parse outside the lock, a concurrent parse of the same payload is harmless
+		Map<String, String> values;
+		if ("AVTransport".equals(service)) {
+			values = SonosXMLParser.getAVTransportFromXML(payload);
+		} else if ("RenderingControl".equals(service)) {
+			values = SonosXMLParser.getRenderingControlFromXML(payload);
+		} else {
+			throw new IllegalArgumentException("Unsupported service "
+					+ service);
+		}
+		values = Collections.unmodifiableMap(values);
+
+		synchronized (this) {
+			payloads.put(key, values);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the number of payloads found in the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of payloads which had to be parsed
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the share of payloads found in the cache, between 0 and 1
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit rate)", hits,
+				misses, getHitRate() * 100);
+	}
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link SonosLastChangeTracker} follows the LastChange payloads of the
+ * services of one zone player. A payload identical to the previous one of the
+ * same service, as sent again when a subscription is renewed, is skipped
+ * without being parsed. Which of the variables of the other payloads changed
+ * is left to the {@link SonosStateStore}.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosLastChangeTracker {
+
+	private final SonosLastChangeCache cache;
+
+	/** last payload, by service */
+	private final Map<String, String> payloads = new HashMap<String, String>();
+
+	private long received;
+	private long duplicates;
+
+	/**
+	 * @param cache
+	 *            parses the payloads, shared with the other zone players
+	 */
+	public SonosLastChangeTracker(SonosLastChangeCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @param service
+	 *            the service which sent the payload, see
+	 *            {@link SonosLastChangeCache#isSupported(String)}
+	 * @param payload
+	 *            the LastChange payload
+	 * @return the values of the payload by variable, empty if the payload is
+	 *         identical to the previous one, not to be modified
+	 */
+	public synchronized Map<String, String> update(String service,
+			String payload) {
+		received++;
+		String previous = payloads.put(service, payload);
+		if (payload.equals(previous)) {
+			duplicates++;
+			return Collections.emptyMap();
+		}
+
+		return cache.parse(service, payload);
+	}
+
+	/**
+	 * Forgets the previous payloads, so the next payload of each service is
+	 * returned even if it is identical.
+	 */
+	public synchronized void clear() {
+		payloads.clear();
+	}
+
+	/**
+	 * @return the number of payloads received
+	 */
+	public synchronized long getReceived() {
+		return received;
+	}
+
+	/**
+	 * @return the share of payloads skipped as identical to the previous one
+	 *         of their service, between 0 and 1
+	 */
+	public synchronized double getDuplicateRate() {
+		return (received == 0) ? 0 : (double) duplicates / received;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d payloads, %.1f%% duplicates", received,
+				getDuplicateRate() * 100);
+	}
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collection;
+
+/**
+ * The {@link SonosPollingParticipant} is polled by the
+ * {@link SonosPollingScheduler}.
+ *
+ * @author agent - Initial contribution
+ */
+public interface SonosPollingParticipant {
+
+	/**
+	 * This method is called at the start of every poll. The calls returned are
+	 * independent of each other and may run concurrently.
+	 *
+	 * @return the calls of the poll
+	 */
+	public Collection<Runnable> getPollingCalls();
+
+}
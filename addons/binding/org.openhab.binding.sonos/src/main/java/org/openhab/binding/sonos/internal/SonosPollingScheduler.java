@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SonosPollingScheduler} polls all zone players of the binding.
+ * <ul>
+ * <li>The first poll of a participant is delayed by a random part of its
+ * interval, so the polls of all participants are spread across the interval.
+ * </li>
+ * <li>The calls of a poll run concurrently on a shared pool of threads, which
+ * limits the number of calls running at the same time for the whole binding.
+ * </li>
+ * <li>A poll is skipped while calls of the previous poll of the same
+ * participant are still running.</li>
+ * </ul>
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosPollingScheduler {
+
+	private Logger logger = LoggerFactory.getLogger(SonosPollingScheduler.class);
+
+	/**
+	 * The default number of calls running at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_CALLS = 4;
+
+	private final ScheduledExecutorService timer;
+	private final ExecutorService workers;
+	private final Random random = new Random();
+
+	/**
+	 * @param maxConcurrentCalls
+	 *            the number of calls running at the same time
+	 */
+	public SonosPollingScheduler(int maxConcurrentCalls) {
+		timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("timer"));
+		workers = Executors.newFixedThreadPool(Math.max(1, maxConcurrentCalls),
+				new NamedThreadFactory("worker"));
+	}
+
+	/**
+	 * Polls a participant until the returned future is cancelled.
+	 *
+	 * @param name
+	 *            the name of the participant, used for logging
+	 * @param participant
+	 *            the participant to poll
+	 * @param interval
+	 *            the time between two polls
+	 * @param unit
+	 *            the unit of the interval
+	 * @return the future of the polling job
+	 */
+	public ScheduledFuture<?> schedule(final String name,
+			final SonosPollingParticipant participant, long interval,
+			TimeUnit unit) {
+		long period = Math.max(1, unit.toMillis(interval));
+		long initialDelay = (long) (random.nextDouble() * period);
+		final AtomicInteger runningCalls = new AtomicInteger();
+
+		logger.debug("Polling '{}' every {} ms, starting in {} ms", new Object[] {
+				name, period, initialDelay });
+
+		return timer.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				poll(name, participant, runningCalls);
+			}
+		}, initialDelay, period, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll(String name, SonosPollingParticipant participant,
+			final AtomicInteger runningCalls) {
+		if (runningCalls.get() > 0) {
+			logger.debug("Skipping a poll of '{}', {} calls of the previous poll are still running",
+					name, runningCalls.get());
+			return;
+		}
+
+		Collection<Runnable> calls;
+		try {
+			calls = participant.getPollingCalls();
+		} catch (Exception e) {
+			logger.debug("Exception while preparing the poll of '{}' : {}", name, e);
+			return;
+		}
+
+		runningCalls.set(calls.size());
+		for (final Runnable call : calls) {
+			try {
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							call.run();
+						} catch (Exception e) {
+							logger.debug("Exception during poll : {}", e);
+						} finally {
+							runningCalls.decrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// the scheduler is shutting down
+				runningCalls.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Stops all polling jobs. Calls which are running are interrupted.
+	 */
+	public void shutdown() {
+		timer.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final String name;
+
+		public NamedThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "sonos-polling-" + name + "-"
+					+ count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link SonosStateStore} holds the state of a zone player: the raw values
+ * of the UPnP variables as received, and the states last published on its
+ * channels. Both are compared with the previous ones, so values are only
+ * converted when they have changed, and channels are only updated on a real
+ * transition.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosStateStore {
+
+	private final Map<String, String> values = new HashMap<String, String>();
+	private final Map<String, State> channelStates = new HashMap<String, State>();
+
+	/**
+	 * @param variable
+	 *            the name of the UPnP variable
+	 * @param value
+	 *            the new value, may be null
+	 * @return true if the value differs from the previous one
+	 */
+	public synchronized boolean update(String variable, String value) {
+		boolean known = values.containsKey(variable);
+		String previous = values.put(variable, value);
+		if (!known) {
+			return true;
+		}
+		return (previous == null) ? value != null : !previous.equals(value);
+	}
+
+	/**
+	 * @param variable
+	 *            the name of the UPnP variable
+	 * @return the last value received, or null
+	 */
+	public synchronized String get(String variable) {
+		return values.get(variable);
+	}
+
+	/**
+	 * @param channelId
+	 *            the id of the channel
+	 * @param state
+	 *            the new state of the channel
+	 * @return true if the state differs from the one last published, so it
+	 *         has to be published
+	 */
+	public synchronized boolean updateChannel(String channelId, State state) {
+		State previous = channelStates.put(channelId, state);
+		return previous == null || !previous.equals(state);
+	}
+
+	/**
+	 * @param channelId
+	 *            the id of the channel
+	 * @return the state last published on the channel, or null
+	 */
+	public synchronized State getChannelState(String channelId) {
+		return channelStates.get(channelId);
+	}
+
+	/**
+	 * Forgets all values and channel states, so the next values received are
+	 * published again.
+	 */
+	public synchronized void clear() {
+		values.clear();
+		channelStates.clear();
+	}
+
+}
@@ -9,7 +9,6 @@
 package org.openhab.binding.sonos.internal;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,11 +18,8 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
  * The {@link SonosXMLParser} is a class of helper functions
@@ -35,6 +31,8 @@ public class SonosXMLParser {
 
 	static final Logger logger = LoggerFactory.getLogger(SonosXMLParser.class);
 
+	private static final SonosXMLReaderPool READERS = new SonosXMLReaderPool();
+
 	private static  MessageFormat METADATA_FORMAT = new MessageFormat(
 			"<DIDL-Lite xmlns:dc=\"http://purl.org/dc/elements/1.1/\" " +
 					"xmlns:upnp=\"urn:schemas-upnp-org:metadata-1-0/upnp/\" " +
@@ -78,9 +76,7 @@ public class SonosXMLParser {
 	public static List<SonosAlarm> getAlarmsFromStringResult(String xml) {
 		AlarmHandler handler = new AlarmHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			logger.error("Could not parse Alarms from string '{}",xml);
 		} catch (SAXException s) {
@@ -99,9 +95,7 @@ public class SonosXMLParser {
 	public static List<SonosEntry> getEntriesFromString(String xml)  {
 		EntryHandler handler = new EntryHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			logger.error("Could not parse Entries from string '{}'",xml);
 		}
@@ -122,9 +116,7 @@ public class SonosXMLParser {
 	public static List<SonosZoneGroup> getZoneGroupFromXML(String xml) {
 		ZoneGroupHandler handler = new ZoneGroupHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			// This should never happen - we're not performing I/O!
 			logger.error("Could not parse ZoneGroup from string '{}'",xml);
@@ -139,9 +131,7 @@ public class SonosXMLParser {
 	public static List<String> getRadioTimeFromXML(String xml) {
 		OpmlHandler handler = new OpmlHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			// This should never happen - we're not performing I/O!
 			logger.error("Could not parse RadioTime from string '{}'",xml);
@@ -156,9 +146,7 @@ public class SonosXMLParser {
 	public static Map<String, String> getRenderingControlFromXML(String xml) {
 		RenderingControlEventHandler handler = new RenderingControlEventHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			// This should never happen - we're not performing I/O!
 			logger.debug("Could not parse Rendering Control from string '{}'", xml);
@@ -171,9 +159,7 @@ public class SonosXMLParser {
 	public static Map<String, String> getAVTransportFromXML(String xml) {
 		AVTransportEventHandler handler = new AVTransportEventHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			// This should never happen - we're not performing I/O!
 			logger.error("Could not parse AV Transport from string '{}'",xml);
@@ -186,9 +172,7 @@ public class SonosXMLParser {
 	public static SonosMetaData getMetaDataFromXML(String xml)  {
 		MetaDataHandler handler = new MetaDataHandler();
 		try {
-			XMLReader reader = XMLReaderFactory.createXMLReader();
-			reader.setContentHandler(handler);
-			reader.parse(new InputSource(new StringReader(xml)));
+			READERS.parse(xml, handler);
 		} catch (IOException e) {
 			// This should never happen - we're not performing I/O!
 			logger.error("Could not parse MetaData from string '{}'",xml);
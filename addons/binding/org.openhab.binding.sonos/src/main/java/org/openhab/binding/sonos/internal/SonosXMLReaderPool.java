@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The {@link SonosXMLReaderPool} keeps SAX readers for reuse. Looking up the
+ * parser implementation and creating a reader costs more than parsing the
+ * small documents sent by the Zone Players, so the parser factory is looked up
+ * once and readers are returned to the pool after a successful parse. The pool
+ * may be used by several threads at the same time.
+ *
+ * @author agent - Initial contribution
+ */
+public final class SonosXMLReaderPool {
+
+	/** number of idle readers kept */
+	static final int MAX_IDLE = 8;
+
+	/** detaches the handler of the last parse from an idle reader */
+	private static final ContentHandler NO_HANDLER = new DefaultHandler();
+
+	private final SAXParserFactory factory;
+	private final ConcurrentLinkedQueue<XMLReader> idle = new ConcurrentLinkedQueue<XMLReader>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	public SonosXMLReaderPool() {
+		factory = SAXParserFactory.newInstance();
+		// the handlers rely on local names
+		factory.setNamespaceAware(true);
+	}
+
+	/**
+	 * Parses a document with a reader of the pool.
+	 *
+	 * @param xml
+	 *            the document
+	 * @param handler
+	 *            receives the content of the document
+	 * @throws IOException
+	 * @throws SAXException
+	 *             if the document could not be parsed
+	 */
+	public void parse(String xml, ContentHandler handler) throws IOException,
+			SAXException {
+		XMLReader reader = borrow();
+		boolean parsed = false;
+		try {
+			reader.setContentHandler(handler);
+			reader.parse(new InputSource(new StringReader(xml)));
+			parsed = true;
+		} finally {
+			reader.setContentHandler(NO_HANDLER);
+			// a reader which failed is not trusted to be reusable
+			if (parsed) {
+				release(reader);
+			}
+		}
+	}
+
+	private XMLReader borrow() throws SAXException {
+		XMLReader reader = idle.poll();
+		if (reader != null) {
+			idleCount.decrementAndGet();
+			return reader;
+		}
+
+		try {
+			synchronized (factory) {
+				return factory.newSAXParser().getXMLReader();
+			}
+		} catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	private void release(XMLReader reader) {
+		if (idleCount.incrementAndGet() <= MAX_IDLE) {
+			idle.offer(reader);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SonosZoneTopology} holds the zone groups of the Sonos households,
+ * shared by all zone players. Every zone player receives the same
+ * ZoneGroupState of its household, so a ZoneGroupState is only parsed when it
+ * differs from the one last applied for the reporting zone player. Coordinator
+ * and member lookups are answered from maps indexed by UDN.
+ *
+ * @author agent - Initial contribution
+ */
+public class SonosZoneTopology {
+
+	private Logger logger = LoggerFactory.getLogger(SonosZoneTopology.class);
+
+	/** last ZoneGroupState applied, by UDN of the zone players it contains */
+	private final Map<String, String> zoneGroupStates = new HashMap<String, String>();
+
+	/** all zone groups of a household, by UDN of the zone players it contains */
+	private final Map<String, List<SonosZoneGroup>> households = new HashMap<String, List<SonosZoneGroup>>();
+
+	/** zone group, by UDN of its members */
+	private final Map<String, SonosZoneGroup> groups = new HashMap<String, SonosZoneGroup>();
+
+	private final CopyOnWriteArrayList<SonosZoneTopologyListener> listeners = new CopyOnWriteArrayList<SonosZoneTopologyListener>();
+
+	/**
+	 * Applies the ZoneGroupState received by a zone player. The listeners are
+	 * notified if the zone groups have changed, for the members of the new
+	 * zone groups and the zone players no longer part of the household.
+	 *
+	 * @param udn
+	 *            the UDN of the zone player that received the ZoneGroupState
+	 * @param zoneGroupState
+	 *            the ZoneGroupState XML
+	 * @return true if the ZoneGroupState differs from the one last applied
+	 *         for the zone player
+	 */
+	public boolean update(String udn, String zoneGroupState) {
+		if (udn == null || zoneGroupState == null) {
+			return false;
+		}
+
+		Set<String> members = new LinkedHashSet<String>();
+
+		synchronized (this) {
+			if (zoneGroupState.equals(zoneGroupStates.get(udn))) {
+				return false;
+			}
+
+			List<SonosZoneGroup> newGroups = Collections
+					.unmodifiableList(SonosXMLParser
+							.getZoneGroupFromXML(zoneGroupState));
+
+			// forget the household the zone player belonged to so far, its
+			// former members are notified as well
+			List<SonosZoneGroup> oldGroups = households.get(udn);
+			if (oldGroups != null) {
+				for (SonosZoneGroup group : oldGroups) {
+					for (String member : group.getMembers()) {
+						zoneGroupStates.remove(member);
+						households.remove(member);
+						groups.remove(member);
+						members.add(member);
+					}
+				}
+			}
+
+			for (SonosZoneGroup group : newGroups) {
+				for (String member : group.getMembers()) {
+					zoneGroupStates.put(member, zoneGroupState);
+					households.put(member, newGroups);
+					groups.put(member, group);
+					members.add(member);
+				}
+			}
+
+			// the zone player itself is part of its own household, even if
+			// the ZoneGroupState could not be parsed
+			if (!zoneGroupStates.containsKey(udn)) {
+				zoneGroupStates.put(udn, zoneGroupState);
+				households.put(udn, newGroups);
+				members.add(udn);
+			}
+
+			logger.debug("Applied a ZoneGroupState with {} groups received by '{}'",
+					newGroups.size(), udn);
+		}
+
+		Collection<String> changedMembers = Collections
+				.unmodifiableSet(members);
+		for (SonosZoneTopologyListener listener : listeners) {
+			try {
+				listener.onTopologyChanged(this, changedMembers);
+			} catch (Exception e) {
+				logger.error("An exception occurred while notifying a topology listener", e);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return the UDN of the coordinator of the zone group of the player, or
+	 *         null if the player is not part of a known zone group
+	 */
+	public synchronized String getCoordinator(String udn) {
+		SonosZoneGroup group = groups.get(udn);
+		return group != null ? group.getCoordinator() : null;
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return true if the player is the coordinator of its zone group
+	 */
+	public synchronized boolean isCoordinator(String udn) {
+		SonosZoneGroup group = groups.get(udn);
+		return group != null && group.getCoordinator().equals(udn);
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return the zone group of the player, or null if the player is not part
+	 *         of a known zone group
+	 */
+	public synchronized SonosZoneGroup getGroup(String udn) {
+		return groups.get(udn);
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return the UDNs of the members of the zone group of the player, which is
+	 *         empty if the player is not part of a known zone group
+	 */
+	public synchronized List<String> getMembers(String udn) {
+		SonosZoneGroup group = groups.get(udn);
+		if (group != null) {
+			return Collections.unmodifiableList(group.getMembers());
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return all zone groups of the household of the player, which is empty
+	 *         if no ZoneGroupState has been received for the player
+	 */
+	public synchronized List<SonosZoneGroup> getHouseholdGroups(String udn) {
+		List<SonosZoneGroup> household = households.get(udn);
+		if (household != null) {
+			return household;
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param udn
+	 *            the UDN of a zone player
+	 * @return the ZoneGroupState last applied for the player, or null
+	 */
+	public synchronized String getZoneGroupState(String udn) {
+		return zoneGroupStates.get(udn);
+	}
+
+	public void addListener(SonosZoneTopologyListener listener) {
+		if (listener != null) {
+			listeners.addIfAbsent(listener);
+		}
+	}
+
+	public void removeListener(SonosZoneTopologyListener listener) {
+		listeners.remove(listener);
+	}
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonos.internal;
+
+import java.util.Collection;
+
+/**
+ * The {@link SonosZoneTopologyListener} is notified when the zone groups of a
+ * Sonos household have changed.
+ *
+ * @author agent - Initial contribution
+ */
+public interface SonosZoneTopologyListener {
+
+	/**
+	 * This method is called whenever a new ZoneGroupState has been applied to
+	 * the topology. It is called from the thread that received the
+	 * ZoneGroupState and should return quickly.
+	 *
+	 * @param topology
+	 *            The topology that has changed.
+	 * @param members
+	 *            The UDNs of the zone players contained in the new
+	 *            ZoneGroupState and of the zone players no longer part of
+	 *            the household.
+	 */
+	public void onTopologyChanged(SonosZoneTopology topology,
+			Collection<String> members);
+
+}